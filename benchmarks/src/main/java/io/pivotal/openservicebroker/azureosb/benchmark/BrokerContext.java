@@ -0,0 +1,39 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.benchmark;
+
+import io.pivotal.openservicebroker.azureosb.AzureOpenServiceBrokerApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the broker in-process against the in-memory Azure and Cloud Foundry fakes of the {@code fake} profile.
+ */
+final class BrokerContext {
+
+    private BrokerContext() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(AzureOpenServiceBrokerApplication.class)
+                .profiles("fake")
+                .properties("server.port=0",
+                        "logging.level.root=WARN",
+                        "logging.level.org.springframework.web.reactive=WARN")
+                .run();
+    }
+}
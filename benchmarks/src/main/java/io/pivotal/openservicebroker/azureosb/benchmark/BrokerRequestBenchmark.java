@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.benchmark;
+
+import io.pivotal.openservicebroker.azureosb.OsbRequests;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures complete Open Service Broker requests, from HTTP handler to repository and back, with Azure and the
+ * Cloud Controller replaced by in-memory fakes. Uses the request shapes of the application test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class BrokerRequestBenchmark {
+
+    private static final String RESOURCE_GROUP = "benchmark";
+
+    private ConfigurableApplicationContext context;
+
+    private WebTestClient webTestClient;
+
+    private String instanceId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BrokerContext.start();
+        webTestClient = WebTestClient.bindToApplicationContext(context).configureClient()
+                .responseTimeout(Duration.ofSeconds(30)).build();
+
+        instanceId = UUID.randomUUID().toString();
+        provision(instanceId);
+        webTestClient.get().uri(OsbRequests.LAST_OPERATION, instanceId)
+                .exchange().expectStatus().isOk();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public void catalog() {
+        webTestClient.get().uri(OsbRequests.CATALOG).exchange().expectStatus().isOk();
+    }
+
+    @Benchmark
+    public void provisionInstance() {
+        provision(UUID.randomUUID().toString());
+    }
+
+    @Benchmark
+    public void getInstance() {
+        webTestClient.get().uri(OsbRequests.INSTANCE, instanceId)
+                .exchange().expectStatus().isOk();
+    }
+
+    @Benchmark
+    public void lastOperation() {
+        webTestClient.get().uri(OsbRequests.LAST_OPERATION, instanceId)
+                .exchange().expectStatus().isOk();
+    }
+
+    @Benchmark
+    public void bindAndUnbind() {
+        String bindingId = UUID.randomUUID().toString();
+        CreateServiceInstanceBindingRequest request = OsbRequests.createBinding(instanceId, RESOURCE_GROUP);
+
+        webTestClient.put().uri(OsbRequests.BINDING, instanceId, bindingId)
+                .body(BodyInserters.fromObject(request)).exchange().expectStatus().isEqualTo(HttpStatus.CREATED);
+        webTestClient.delete().uri(OsbRequests.UNBIND, instanceId, bindingId)
+                .exchange().expectStatus().isOk();
+    }
+
+    private void provision(String id) {
+        CreateServiceInstanceRequest request = OsbRequests.createInstance(RESOURCE_GROUP,
+                UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+        webTestClient.put().uri(OsbRequests.PROVISION, id)
+                .body(BodyInserters.fromObject(request)).exchange().expectStatus().isEqualTo(HttpStatus.ACCEPTED);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.benchmark;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pivotal.openservicebroker.azureosb.fake.FakeCloudFoundryNameLookup;
+import io.pivotal.openservicebroker.azureosb.fake.FakeCosmosDBAccountClient;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays Cloud Controller traffic against the broker at increasing concurrency and reports throughput, latency
+ * percentiles and error rates per level, to find where provisioning and binding stop scaling.
+ * <p>
+ * Without {@code loadtest.url} the broker runs in-process, with Azure and the Cloud Controller replaced by fakes
+ * that answer after {@code loadtest.azure-latency} and {@code loadtest.cloudfoundry-latency}.
+ */
+public class LoadTest {
+
+    private static final double SCALING_THRESHOLD = 1.1;
+
+    public static void main(String[] args) {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+
+        ConfigurableApplicationContext context = null;
+        String url = settings.getUrl();
+        if (url == null) {
+            context = BrokerContext.start();
+            context.getBean(FakeCosmosDBAccountClient.class).setLatency(settings.getAzureLatency());
+            context.getBean(FakeCloudFoundryNameLookup.class).setLatency(settings.getCloudFoundryLatency());
+            url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            run(WebClient.builder().baseUrl(url).build(), settings);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static void run(WebClient webClient, LoadTestSettings settings) {
+        double previousThroughput = 0;
+        Integer saturatedAt = null;
+
+        for (int concurrency : settings.getConcurrencyLevels()) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            OsbTraffic traffic = new OsbTraffic(webClient, registry, settings);
+
+            long start = System.nanoTime();
+            long deadline = start + settings.getDuration().toNanos();
+            Flux.range(0, concurrency)
+                    .flatMap(worker -> traffic.runUntil(deadline), concurrency)
+                    .blockLast();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            double throughput = report(concurrency, registry, seconds);
+            if (saturatedAt == null && previousThroughput > 0 && throughput < previousThroughput * SCALING_THRESHOLD) {
+                saturatedAt = concurrency;
+            }
+            previousThroughput = Math.max(previousThroughput, throughput);
+        }
+
+        if (saturatedAt != null) {
+            System.out.printf("%nThroughput stopped scaling at concurrency %d (peak %.1f req/s)%n", saturatedAt, previousThroughput);
+        } else {
+            System.out.printf("%nThroughput still scaling at the highest concurrency (peak %.1f req/s)%n", previousThroughput);
+        }
+    }
+
+    private static double report(int concurrency, SimpleMeterRegistry registry, double seconds) {
+        Map<String, Stats> operations = new TreeMap<>();
+        for (Timer timer : registry.find(OsbTraffic.REQUESTS).timers()) {
+            operations.computeIfAbsent(timer.getId().getTag("operation"), operation -> new Stats()).add(timer);
+        }
+        Stats sessions = new Stats();
+        registry.find(OsbTraffic.SESSIONS).timers().forEach(sessions::add);
+
+        long requests = operations.values().stream().mapToLong(stats -> stats.count).sum();
+        long errors = operations.values().stream().mapToLong(stats -> stats.errors).sum();
+        double throughput = requests / seconds;
+
+        System.out.printf("%n== concurrency %d: %d requests in %.1f s, %.1f req/s, %.2f %% errors, %d sessions (%d failed)%n",
+                concurrency, requests, seconds, throughput, percentage(errors, requests), sessions.count, sessions.errors);
+        System.out.printf("%-16s %8s %8s %10s %10s %10s %10s%n", "operation", "count", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        operations.forEach((operation, stats) -> stats.print(operation));
+        sessions.print("(session)");
+
+        return throughput;
+    }
+
+    private static double percentage(long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+
+    /**
+     * Counts of one operation across outcomes, with the latency distribution of its successful requests.
+     */
+    private static class Stats {
+
+        private long count;
+
+        private long errors;
+
+        private Timer success;
+
+        void add(Timer timer) {
+            count += timer.count();
+            if ("success".equals(timer.getId().getTag("outcome"))) {
+                success = timer;
+            } else {
+                errors += timer.count();
+            }
+        }
+
+        void print(String operation) {
+            double p50 = 0, p95 = 0, p99 = 0, max = 0;
+            if (success != null) {
+                ValueAtPercentile[] percentiles = success.takeSnapshot().percentileValues();
+                p50 = percentiles[0].value(TimeUnit.MILLISECONDS);
+                p95 = percentiles[1].value(TimeUnit.MILLISECONDS);
+                p99 = percentiles[2].value(TimeUnit.MILLISECONDS);
+                max = success.max(TimeUnit.MILLISECONDS);
+            }
+            System.out.printf("%-16s %8d %8d %10.1f %10.1f %10.1f %10.1f%n", operation, count, errors, p50, p95, p99, max);
+        }
+    }
+}
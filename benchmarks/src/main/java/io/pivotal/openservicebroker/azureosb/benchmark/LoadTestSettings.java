@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.benchmark;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Load test knobs, read from {@code loadtest.*} system properties.
+ */
+class LoadTestSettings {
+
+    private final String url;
+
+    private final List<Integer> concurrencyLevels;
+
+    private final Duration duration;
+
+    private final int bindingsPerInstance;
+
+    private final Duration pollInterval;
+
+    private final int maxPolls;
+
+    private final String resourceGroup;
+
+    private final Duration azureLatency;
+
+    private final Duration cloudFoundryLatency;
+
+    private LoadTestSettings() {
+        url = System.getProperty("loadtest.url");
+        concurrencyLevels = Arrays.stream(System.getProperty("loadtest.concurrency", "1,2,4,8,16,32,64").split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .collect(Collectors.toList());
+        duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        bindingsPerInstance = Integer.getInteger("loadtest.bindings", 5);
+        pollInterval = Duration.parse(System.getProperty("loadtest.poll-interval", "PT0.2S"));
+        maxPolls = Integer.getInteger("loadtest.max-polls", 3000);
+        resourceGroup = System.getProperty("loadtest.resource-group", "loadtest");
+        azureLatency = Duration.parse(System.getProperty("loadtest.azure-latency", "PT0.5S"));
+        cloudFoundryLatency = Duration.parse(System.getProperty("loadtest.cloudfoundry-latency", "PT0.02S"));
+    }
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings();
+    }
+
+    /**
+     * The broker to load, or {@code null} to start one in-process against the Azure and Cloud Foundry fakes.
+     */
+    String getUrl() {
+        return url;
+    }
+
+    List<Integer> getConcurrencyLevels() {
+        return concurrencyLevels;
+    }
+
+    Duration getDuration() {
+        return duration;
+    }
+
+    int getBindingsPerInstance() {
+        return bindingsPerInstance;
+    }
+
+    Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    int getMaxPolls() {
+        return maxPolls;
+    }
+
+    String getResourceGroup() {
+        return resourceGroup;
+    }
+
+    Duration getAzureLatency() {
+        return azureLatency;
+    }
+
+    Duration getCloudFoundryLatency() {
+        return cloudFoundryLatency;
+    }
+}
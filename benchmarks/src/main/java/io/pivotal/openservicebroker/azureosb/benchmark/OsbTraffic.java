@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.pivotal.openservicebroker.azureosb.OsbRequests;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The traffic the Cloud Controller sends a broker over the lifetime of one service instance: a catalog fetch,
+ * provisioning and polling until it finishes, a storm of concurrent binds and unbinds, and deprovisioning.
+ * Every request is timed into the given registry, tagged with its operation and outcome.
+ */
+class OsbTraffic {
+
+    static final String REQUESTS = "osb.loadtest.requests";
+
+    static final String SESSIONS = "osb.loadtest.sessions";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final WebClient webClient;
+
+    private final MeterRegistry meterRegistry;
+
+    private final LoadTestSettings settings;
+
+    OsbTraffic(WebClient webClient, MeterRegistry meterRegistry, LoadTestSettings settings) {
+        this.webClient = webClient;
+        this.meterRegistry = meterRegistry;
+        this.settings = settings;
+    }
+
+    /**
+     * Runs instance lifecycles back to back until the deadline, as a single Cloud Controller worker would.
+     */
+    Mono<Void> runUntil(long deadlineNanos) {
+        return session()
+                .repeat(() -> System.nanoTime() < deadlineNanos)
+                .then();
+    }
+
+    Mono<Void> session() {
+        String instanceId = UUID.randomUUID().toString();
+        long start = System.nanoTime();
+
+        return send("catalog", HttpStatus.OK, () -> webClient.get().uri(OsbRequests.CATALOG))
+                .then(send("provision", HttpStatus.ACCEPTED, () -> webClient.put().uri(OsbRequests.PROVISION, instanceId)
+                        .body(BodyInserters.fromObject(OsbRequests.createInstance(settings.getResourceGroup(),
+                                UUID.randomUUID().toString(), UUID.randomUUID().toString())))))
+                .then(awaitOperation(instanceId))
+                .then(send("get_instance", HttpStatus.OK, () -> webClient.get().uri(OsbRequests.INSTANCE, instanceId)))
+                .thenMany(Flux.range(0, settings.getBindingsPerInstance())
+                        .flatMap(i -> bindAndUnbind(instanceId), settings.getBindingsPerInstance()))
+                .then(send("deprovision", HttpStatus.ACCEPTED, () -> webClient.delete().uri(OsbRequests.DEPROVISION, instanceId)))
+                .then(awaitOperation(instanceId))
+                .doOnSuccess(state -> record(SESSIONS, "session", "success", start))
+                .onErrorResume(e -> {
+                    record(SESSIONS, "session", "error", start);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<String> bindAndUnbind(String instanceId) {
+        String bindingId = UUID.randomUUID().toString();
+
+        return send("bind", HttpStatus.CREATED, () -> webClient.put().uri(OsbRequests.BINDING, instanceId, bindingId)
+                        .body(BodyInserters.fromObject(OsbRequests.createBinding(instanceId, settings.getResourceGroup()))))
+                .then(send("unbind", HttpStatus.OK, () -> webClient.delete().uri(OsbRequests.UNBIND, instanceId, bindingId)));
+    }
+
+    /**
+     * Polls {@code last_operation} until the operation has left the {@code in progress} state, failing the session
+     * if it did not succeed. A deprovisioned instance may already be gone, which counts as success.
+     */
+    private Mono<String> awaitOperation(String instanceId) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return webClient.get().uri(OsbRequests.LAST_OPERATION, instanceId).exchange()
+                    .flatMap(response -> response.bodyToMono(String.class).defaultIfEmpty("")
+                            .map(body -> state(response.statusCode(), body)))
+                    .doOnSuccess(state -> record(REQUESTS, "last_operation", "success", start))
+                    .doOnError(e -> record(REQUESTS, "last_operation", outcome(e), start));
+        })
+                .filter(state -> !"in progress".equals(state))
+                .repeatWhenEmpty(settings.getMaxPolls(), polls -> polls.delayElements(settings.getPollInterval()))
+                .switchIfEmpty(Mono.error(new IllegalStateException("Operation on " + instanceId + " did not finish")))
+                .flatMap(state -> "succeeded".equals(state)
+                        ? Mono.just(state)
+                        : Mono.error(new IllegalStateException("Operation on " + instanceId + " ended " + state)));
+    }
+
+    private Mono<String> send(String operation, HttpStatus expected, Supplier<WebClient.RequestHeadersSpec<?>> request) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request.get().exchange()
+                    .flatMap(response -> response.bodyToMono(String.class).defaultIfEmpty("")
+                            .flatMap(body -> response.statusCode() == expected
+                                    ? Mono.just(body)
+                                    : Mono.error(new UnexpectedStatusException(operation, response.statusCode(), body))))
+                    .doOnSuccess(body -> record(REQUESTS, operation, "success", start))
+                    .doOnError(e -> record(REQUESTS, operation, outcome(e), start));
+        });
+    }
+
+    private void record(String name, String operation, String outcome, long startNanos) {
+        Timer.builder(name)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String outcome(Throwable e) {
+        if (e instanceof UnexpectedStatusException) {
+            return ((UnexpectedStatusException) e).status.is5xxServerError() ? "server_error" : "client_error";
+        }
+        return "error";
+    }
+
+    private static String state(HttpStatus status, String body) {
+        if (status == HttpStatus.GONE) {
+            return "succeeded";
+        }
+        if (!status.is2xxSuccessful()) {
+            throw new UnexpectedStatusException("last_operation", status, body);
+        }
+        try {
+            return objectMapper.readTree(body).path("state").asText();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable last_operation response: " + body, e);
+        }
+    }
+
+    private static class UnexpectedStatusException extends RuntimeException {
+
+        private final HttpStatus status;
+
+        UnexpectedStatusException(String operation, HttpStatus status, String body) {
+            super(operation + " answered " + status + ": " + body);
+            this.status = status;
+        }
+    }
+}
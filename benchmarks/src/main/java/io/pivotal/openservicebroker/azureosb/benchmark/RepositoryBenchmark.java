@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.benchmark;
+
+import io.pivotal.openservicebroker.azureosb.credentials.CredentialsStore;
+import io.pivotal.openservicebroker.azureosb.credentials.CredentialsStoreProperties;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceBindingRepository;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import io.pivotal.openservicebroker.azureosb.model.ServiceBinding;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving and loading service instances and bindings, with encrypted credentials, for a growing number of
+ * parameter and credential map entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int entries;
+
+    private ConfigurableApplicationContext context;
+
+    private ServiceInstanceRepository serviceInstanceRepository;
+
+    private ServiceBindingRepository serviceBindingRepository;
+
+    private Map<String, Object> parameters;
+
+    private String encryptedCredentials;
+
+    private String instanceId;
+
+    private String bindingId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BrokerContext.start();
+        serviceInstanceRepository = context.getBean(ServiceInstanceRepository.class);
+        serviceBindingRepository = context.getBean(ServiceBindingRepository.class);
+
+        parameters = new HashMap<>();
+        Map<String, Object> credentials = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            parameters.put("parameter-" + i, "value-" + i);
+            credentials.put("credential-" + i, UUID.randomUUID().toString());
+        }
+
+        instanceId = UUID.randomUUID().toString();
+        bindingId = UUID.randomUUID().toString();
+        encryptedCredentials = credentialsStore().encrypt(instanceId, credentials);
+        serviceInstanceRepository.save(newInstance(instanceId));
+        serviceBindingRepository.save(newBinding(bindingId));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public ServiceInstance saveInstance() {
+        return serviceInstanceRepository.save(newInstance(UUID.randomUUID().toString()));
+    }
+
+    @Benchmark
+    public ServiceInstance loadInstance() {
+        return serviceInstanceRepository.findById(instanceId).orElseThrow(IllegalStateException::new);
+    }
+
+    @Benchmark
+    public ServiceBinding saveBinding() {
+        return serviceBindingRepository.save(newBinding(UUID.randomUUID().toString()));
+    }
+
+    @Benchmark
+    public ServiceBinding loadBinding() {
+        return serviceBindingRepository.findById(bindingId).orElseThrow(IllegalStateException::new);
+    }
+
+    private ServiceBinding newBinding(String id) {
+        return new ServiceBinding(id, instanceId, parameters, encryptedCredentials, 0);
+    }
+
+    private static CredentialsStore credentialsStore() {
+        byte[] masterKey = new byte[32];
+        new SecureRandom().nextBytes(masterKey);
+        CredentialsStoreProperties properties = new CredentialsStoreProperties();
+        properties.setMasterKey(Base64.getEncoder().encodeToString(masterKey));
+        return new CredentialsStore(properties);
+    }
+
+    private ServiceInstance newInstance(String id) {
+        return new ServiceInstance(id, "cosmosdb", "db-small", "org-benchmark", "space-benchmark",
+                "benchmark", null, parameters);
+    }
+}
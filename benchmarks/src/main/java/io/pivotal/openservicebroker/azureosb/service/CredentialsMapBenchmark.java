@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.service;
+
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountListConnectionStringsResult;
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountListKeysResult;
+import io.pivotal.openservicebroker.azureosb.fake.FakeCosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.model.AccountKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning the Azure key and connection string results into the credentials map of a binding.
+ * Lives in the service package to reach the package-private conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CredentialsMapBenchmark {
+
+    private DatabaseAccountListConnectionStringsResult connectionStrings;
+
+    private DatabaseAccountListKeysResult keys;
+
+    @Setup
+    public void setUp() {
+        connectionStrings = FakeCosmosDBAccountClient.connectionStrings("benchmark");
+        keys = FakeCosmosDBAccountClient.keys("benchmark");
+    }
+
+    @Benchmark
+    public Map<String, Object> toCredentialsMap() {
+        return CosmosDBBindingService.toCredentialsMap(connectionStrings, keys, AccountKey.PRIMARY, 0);
+    }
+}
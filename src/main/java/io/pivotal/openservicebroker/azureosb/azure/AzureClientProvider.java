@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.azure;
+
+import com.microsoft.azure.credentials.ApplicationTokenCredentials;
+import com.microsoft.azure.credentials.AzureTokenCredentials;
+import com.microsoft.azure.management.Azure;
+import io.pivotal.openservicebroker.azureosb.tracing.BrokerTracing;
+import okhttp3.ConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the one {@link Azure} management client shared by all broker services.
+ * <p>
+ * The client is authenticated lazily on first use, so the broker starts without Azure credentials,
+ * and reuses a single OkHttp/Retrofit stack (and with it one connection pool and dispatcher) for every ARM call.
+ * The first token is acquired while authenticating and a background thread acquires a fresh one before the current
+ * one expires, both in spans of their own, so ARM requests do not wait for Azure AD.
+ */
+public class AzureClientProvider implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AzureClientProvider.class);
+
+    /**
+     * How long idle ARM connections are kept, the same as the Azure SDK's own pool.
+     */
+    private static final long CONNECTION_KEEP_ALIVE_MINUTES = 5;
+
+    private final AzureProperties properties;
+
+    private final ResourceLoader resourceLoader;
+
+    private final BrokerTracing brokerTracing;
+
+    private volatile Azure azure;
+
+    private ScheduledExecutorService tokenRefresher;
+
+    public AzureClientProvider(AzureProperties properties, ResourceLoader resourceLoader, BrokerTracing brokerTracing) {
+        this.properties = properties;
+        this.resourceLoader = resourceLoader;
+        this.brokerTracing = brokerTracing;
+    }
+
+    public Azure getAzure() {
+        Azure result = azure;
+        if (result == null) {
+            synchronized (this) {
+                result = azure;
+                if (result == null) {
+                    result = brokerTracing.inSpan("azure authenticate", this::authenticate);
+                    azure = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Azure authenticate() {
+        ApplicationTokenCredentials applicationTokenCredentials = loadCredentials();
+        RefreshingTokenCredentials credentials = new RefreshingTokenCredentials(applicationTokenCredentials);
+        credentials.refresh(applicationTokenCredentials);
+
+        Azure client = Azure.configure()
+                .withConnectionPool(new ConnectionPool(properties.getMaxIdleConnections(), CONNECTION_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .withConnectionTimeout(properties.getConnectionTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .withReadTimeout(properties.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .authenticate(credentials)
+                .withSubscription(credentials.defaultSubscriptionId());
+
+        startTokenRefresh(credentials);
+        logger.info("Authenticated Azure management client for subscription {}", client.subscriptionId());
+        return client;
+    }
+
+    private ApplicationTokenCredentials loadCredentials() {
+        try {
+            File file = resourceLoader.getResource(properties.getCredentialsFile()).getFile();
+            return ApplicationTokenCredentials.fromFile(file);
+        } catch (IOException e) {
+            logger.error("Could not read Azure credentials from {}", properties.getCredentialsFile(), e);
+            throw new ServiceBrokerException("Could not authenticate against Azure", e);
+        }
+    }
+
+    private void startTokenRefresh(RefreshingTokenCredentials credentials) {
+        long interval = properties.getTokenRefreshInterval().toMillis();
+
+        tokenRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "azure-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tokenRefresher.scheduleWithFixedDelay(() -> {
+            try {
+                brokerTracing.runInSpan("azure token-refresh", () -> credentials.refresh(loadCredentials()));
+            } catch (RuntimeException e) {
+                logger.warn("Proactive Azure token refresh failed, keeping the current token", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (tokenRefresher != null) {
+            tokenRefresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Delegates to the latest {@link ApplicationTokenCredentials}. Swapping in a new delegate that already
+     * holds a token means requests never pay for token acquisition after the first one.
+     */
+    static class RefreshingTokenCredentials extends AzureTokenCredentials {
+
+        private volatile ApplicationTokenCredentials delegate;
+
+        RefreshingTokenCredentials(ApplicationTokenCredentials delegate) {
+            super(delegate.environment(), delegate.domain());
+            this.delegate = delegate;
+            withDefaultSubscriptionId(delegate.defaultSubscriptionId());
+        }
+
+        void refresh(ApplicationTokenCredentials fresh) {
+            try {
+                fresh.getToken(fresh.environment().resourceManagerEndpoint());
+            } catch (IOException e) {
+                throw new ServiceBrokerException("Could not acquire Azure token", e);
+            }
+            this.delegate = fresh;
+            logger.debug("Refreshed Azure management token");
+        }
+
+        @Override
+        public String getToken(String resource) throws IOException {
+            return delegate.getToken(resource);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.azure;
+
+import io.pivotal.openservicebroker.azureosb.metrics.BrokerMetrics;
+import io.pivotal.openservicebroker.azureosb.resilience.DependencyGuards;
+import io.pivotal.openservicebroker.azureosb.support.BoundedSchedulers;
+import io.pivotal.openservicebroker.azureosb.tracing.BrokerTracing;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+@Configuration
+@EnableConfigurationProperties(AzureProperties.class)
+public class AzureConfiguration {
+
+    @Bean
+    public AzureClientProvider azureClientProvider(AzureProperties properties, ResourceLoader resourceLoader,
+                                                   BrokerTracing brokerTracing) {
+        return new AzureClientProvider(properties, resourceLoader, brokerTracing);
+    }
+
+    @Bean
+    public CosmosDBAccountClient cosmosDBAccountClient(AzureClientProvider azureClientProvider, AzureProperties properties,
+                                                       BrokerMetrics brokerMetrics, BrokerTracing brokerTracing,
+                                                       DependencyGuards dependencyGuards) {
+        return new AzureCosmosDBAccountClient(azureClientProvider, properties, BoundedSchedulers.newBoundedScheduler("azure",
+                properties.getThreads(), properties.getQueueCapacity()), brokerMetrics, brokerTracing, dependencyGuards.azure());
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.azure;
+
+import com.microsoft.azure.CloudException;
+import com.microsoft.azure.management.Azure;
+import com.microsoft.azure.management.cosmosdb.CosmosDBAccount;
+import com.microsoft.azure.management.cosmosdb.CosmosDBAccounts;
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountListConnectionStringsResult;
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountListKeysResult;
+import com.microsoft.azure.management.cosmosdb.KeyKind;
+import com.microsoft.azure.management.resources.fluentcore.arm.Region;
+import com.microsoft.rest.ServiceCallback;
+import io.pivotal.openservicebroker.azureosb.metrics.BrokerMetrics;
+import io.pivotal.openservicebroker.azureosb.resilience.DependencyGuard;
+import io.pivotal.openservicebroker.azureosb.tracing.BrokerTracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.retry.Retry;
+import rx.Completable;
+import rx.Observable;
+import rx.Subscription;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link CosmosDBAccountClient} backed by the Azure fluent SDK.
+ * <p>
+ * The SDK's RxJava 1 observables execute their HTTP call on the subscribing thread, so every call is subscribed
+ * on the dedicated Azure scheduler and adapted to Reactor. Read calls are bounded by a timeout and retried with
+ * jittered exponential backoff when ARM throttles or fails transiently. Each call is timed and traced as a whole, retries included.
+ * <p>
+ * Calls pass through the Azure {@link DependencyGuard}: once too many of them failed transiently, they are rejected
+ * without reaching ARM until its circuit breaker lets trial calls through again. The bounded Azure scheduler is the
+ * bulkhead that keeps a degraded ARM from taking up threads beyond its own.
+ */
+public class AzureCosmosDBAccountClient implements CosmosDBAccountClient, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AzureCosmosDBAccountClient.class);
+
+    /**
+     * Region tag of calls that are not bound to a single region.
+     */
+    private static final String ANY_REGION = "any";
+
+    private final AzureClientProvider azureClientProvider;
+
+    private final AzureProperties properties;
+
+    private final Scheduler scheduler;
+
+    private final BrokerMetrics brokerMetrics;
+
+    private final BrokerTracing brokerTracing;
+
+    private final DependencyGuard guard;
+
+    private final Retry<Object> transientFailureRetry;
+
+    public AzureCosmosDBAccountClient(AzureClientProvider azureClientProvider, AzureProperties properties, Scheduler scheduler,
+                                      BrokerMetrics brokerMetrics, BrokerTracing brokerTracing, DependencyGuard guard) {
+        this.azureClientProvider = azureClientProvider;
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.brokerMetrics = brokerMetrics;
+        this.brokerTracing = brokerTracing;
+        this.guard = guard;
+        this.transientFailureRetry = Retry.onlyIf(context -> isTransient(context.exception()))
+                .exponentialBackoffWithJitter(properties.getRetryFirstBackoff(), properties.getRetryMaxBackoff())
+                .retryMax(properties.getMaxRetries())
+                .doOnRetry(context -> logger.warn("Retrying ARM call after attempt {} failed", context.iteration(), context.exception()));
+    }
+
+    @Override
+    public Mono<CosmosDBAccountResource> createAccount(String name, String resourceGroup, CosmosDBAccountProfile profile) {
+        return observed("create_account", profile.getRegion(), Mono.<CosmosDBAccount>create(sink -> define(name, resourceGroup, profile)
+                .withTag(CosmosDBAccountResource.MANAGED_BY_TAG, CosmosDBAccountResource.MANAGED_BY)
+                .withTag(CosmosDBAccountResource.INSTANCE_ID_TAG, name)
+                .createAsync(callback(sink)))
+                .map(AzureCosmosDBAccountClient::toResource)
+                .subscribeOn(scheduler));
+    }
+
+    private CosmosDBAccount.DefinitionStages.WithCreate define(String name, String resourceGroup, CosmosDBAccountProfile profile) {
+        CosmosDBAccount.DefinitionStages.WithConsistencyPolicy withApi = withApi(accounts().define(name)
+                .withRegion(region(profile.getRegion()))
+                .withNewResourceGroup(resourceGroup), profile.getApi());
+
+        List<String> writeRegions = profile.getWriteRegions();
+        CosmosDBAccount.DefinitionStages.WithCreate definition = withConsistency(withApi, profile, region(writeRegions.get(0)));
+        // the SDK only takes one explicit write replica; with multiple write locations enabled every
+        // further replica accepts writes, so the remaining write regions are added as plain replicas
+        for (String writeRegion : writeRegions.subList(1, writeRegions.size())) {
+            definition = definition.withReadReplication(region(writeRegion));
+        }
+        for (String readRegion : profile.getReadRegions()) {
+            definition = definition.withReadReplication(region(readRegion));
+        }
+        return definition.withMultipleWriteLocationsEnabled(profile.isMultipleWriteLocations());
+    }
+
+    private static CosmosDBAccount.DefinitionStages.WithConsistencyPolicy withApi(CosmosDBAccount.DefinitionStages.WithKind definition,
+                                                                                 CosmosDBAccountProfile.Api api) {
+        switch (api) {
+            case MONGO_DB:
+                return definition.withDataModelMongoDB();
+            case CASSANDRA:
+                return definition.withDataModelCassandra();
+            case TABLE:
+                return definition.withDataModelAzureTable();
+            case GREMLIN:
+                return definition.withDataModelGremlin();
+            default:
+                return definition.withDataModelSql();
+        }
+    }
+
+    private static CosmosDBAccount.DefinitionStages.WithCreate withConsistency(
+            CosmosDBAccount.DefinitionStages.WithConsistencyPolicy definition, CosmosDBAccountProfile profile, Region writeRegion) {
+        switch (profile.getConsistency()) {
+            case EVENTUAL:
+                return definition.withEventualConsistency().withWriteReplication(writeRegion);
+            case BOUNDED_STALENESS:
+                return definition.withBoundedStalenessConsistency(profile.getMaxStalenessPrefix(), profile.getMaxIntervalInSeconds())
+                        .withWriteReplication(writeRegion);
+            case STRONG:
+                // strong consistency skips the write replication stage, the first replica listed takes the writes
+                return definition.withStrongConsistency().withReadReplication(writeRegion);
+            default:
+                return definition.withSessionConsistency().withWriteReplication(writeRegion);
+        }
+    }
+
+    private static Region region(String name) {
+        return Region.findByLabelOrName(name);
+    }
+
+    @Override
+    public Mono<CosmosDBAccountResource> getAccount(String resourceGroup, String name) {
+        return observed("get_account", withRetry(Mono.defer(() -> toMono(accounts().getByResourceGroupAsync(resourceGroup, name)))
+                .subscribeOn(scheduler))
+                .onErrorResume(AzureCosmosDBAccountClient::isNotFound, throwable -> Mono.empty())
+                .map(AzureCosmosDBAccountClient::toResource));
+    }
+
+    @Override
+    public Flux<CosmosDBAccountResource> listAccounts() {
+        return brokerTracing.span("azure list_accounts", brokerMetrics.timeAzureRequest("list_accounts", ANY_REGION,
+                guard.protect(Flux.defer(() -> toFlux(accounts().listAsync()))
+                        .map(AzureCosmosDBAccountClient::toResource)
+                        .subscribeOn(scheduler))));
+    }
+
+    @Override
+    public Mono<Void> deleteAccount(String id) {
+        return observed("delete_account", Mono.defer(() -> toMono(accounts().deleteByIdAsync(id)))
+                .subscribeOn(scheduler));
+    }
+
+    @Override
+    public Mono<DatabaseAccountListConnectionStringsResult> listConnectionStrings(String resourceGroup, String name) {
+        return observed("list_connection_strings", withRetry(Mono.defer(() -> toMono(accounts().listConnectionStringsAsync(resourceGroup, name)))
+                .subscribeOn(scheduler)));
+    }
+
+    @Override
+    public Mono<DatabaseAccountListKeysResult> listKeys(String resourceGroup, String name) {
+        return observed("list_keys", withRetry(Mono.defer(() -> toMono(accounts().listKeysAsync(resourceGroup, name)))
+                .subscribeOn(scheduler)));
+    }
+
+    /**
+     * Not retried: regenerating a key is not idempotent, and a timed-out call may still have replaced it.
+     */
+    @Override
+    public Mono<Void> regenerateKey(String resourceGroup, String name, KeyKind keyKind) {
+        return observed("regenerate_key", Mono.defer(() -> toMono(accounts().regenerateKeyAsync(resourceGroup, name, keyKind)))
+                .subscribeOn(scheduler));
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    private CosmosDBAccounts accounts() {
+        Azure azure = azureClientProvider.getAzure();
+        return azure.cosmosDBAccounts();
+    }
+
+    private <T> Mono<T> observed(String operation, Mono<T> call) {
+        return observed(operation, ANY_REGION, call);
+    }
+
+    private <T> Mono<T> observed(String operation, String region, Mono<T> call) {
+        return brokerTracing.span("azure " + operation, brokerMetrics.timeAzureRequest(operation, region, guard.protect(call)));
+    }
+
+    private <T> Mono<T> withRetry(Mono<T> call) {
+        return call.timeout(properties.getCallTimeout())
+                .retryWhen(transientFailureRetry);
+    }
+
+    /**
+     * Throttling, server errors, timeouts and I/O failures are worth another attempt; client errors are not.
+     */
+    public static boolean isTransient(Throwable throwable) {
+        if (throwable instanceof CloudException && ((CloudException) throwable).response() != null) {
+            int status = ((CloudException) throwable).response().code();
+            return status == 429 || status >= 500;
+        }
+        return throwable instanceof TimeoutException || throwable instanceof IOException;
+    }
+
+    private static boolean isNotFound(Throwable throwable) {
+        return throwable instanceof CloudException && ((CloudException) throwable).response() != null
+                && ((CloudException) throwable).response().code() == 404;
+    }
+
+    private static CosmosDBAccountResource toResource(CosmosDBAccount account) {
+        return new CosmosDBAccountResource(account.id(), account.name(), account.resourceGroupName(), account.tags());
+    }
+
+    private static <T> ServiceCallback<T> callback(MonoSink<T> sink) {
+        return new ServiceCallback<T>() {
+            @Override
+            public void failure(Throwable throwable) {
+                sink.error(throwable);
+            }
+
+            @Override
+            public void success(T result) {
+                sink.success(result);
+            }
+        };
+    }
+
+    private static <T> Mono<T> toMono(Observable<T> observable) {
+        return Mono.create(sink -> {
+            Subscription subscription = observable.subscribe(sink::success, sink::error, sink::success);
+            sink.onDispose(subscription::unsubscribe);
+        });
+    }
+
+    private static Mono<Void> toMono(Completable completable) {
+        return Mono.create(sink -> {
+            Subscription subscription = completable.subscribe(sink::success, sink::error);
+            sink.onDispose(subscription::unsubscribe);
+        });
+    }
+
+    private static <T> Flux<T> toFlux(Observable<T> observable) {
+        return Flux.create(sink -> {
+            Subscription subscription = observable.subscribe(sink::next, sink::error, sink::complete);
+            sink.onDispose(subscription::unsubscribe);
+        });
+    }
+}
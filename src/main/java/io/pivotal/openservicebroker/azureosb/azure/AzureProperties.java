@@ -0,0 +1,157 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.azure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "broker.azure")
+public class AzureProperties {
+
+    /**
+     * Classpath or file location of the Azure service principal credentials.
+     */
+    private String credentialsFile = "classpath:auth.json";
+
+    /**
+     * Idle connections kept in the shared OkHttp pool used for all ARM calls.
+     */
+    private int maxIdleConnections = 10;
+
+    private Duration connectionTimeout = Duration.ofSeconds(10);
+
+    private Duration readTimeout = Duration.ofSeconds(60);
+
+    /**
+     * How often a fresh token is acquired in the background. Azure AD tokens live for at least an hour,
+     * so the default keeps request threads from ever waiting on an expired token.
+     */
+    private Duration tokenRefreshInterval = Duration.ofMinutes(45);
+
+    /**
+     * Threads available for Azure SDK calls, which block the subscribing thread while waiting for ARM.
+     */
+    private int threads = 16;
+
+    /**
+     * Azure calls allowed to wait for a free thread before new ones are rejected.
+     */
+    private int queueCapacity = 500;
+
+    /**
+     * Upper bound for a single read call against ARM, including time spent waiting for a free Azure thread.
+     */
+    private Duration callTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Retries of a read call failing with a throttling (429) or server (5xx) error, or a timeout.
+     */
+    private int maxRetries = 3;
+
+    private Duration retryFirstBackoff = Duration.ofMillis(200);
+
+    private Duration retryMaxBackoff = Duration.ofSeconds(2);
+
+    public String getCredentialsFile() {
+        return credentialsFile;
+    }
+
+    public void setCredentialsFile(String credentialsFile) {
+        this.credentialsFile = credentialsFile;
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public Duration getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(Duration connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getTokenRefreshInterval() {
+        return tokenRefreshInterval;
+    }
+
+    public void setTokenRefreshInterval(Duration tokenRefreshInterval) {
+        this.tokenRefreshInterval = tokenRefreshInterval;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getCallTimeout() {
+        return callTimeout;
+    }
+
+    public void setCallTimeout(Duration callTimeout) {
+        this.callTimeout = callTimeout;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public Duration getRetryFirstBackoff() {
+        return retryFirstBackoff;
+    }
+
+    public void setRetryFirstBackoff(Duration retryFirstBackoff) {
+        this.retryFirstBackoff = retryFirstBackoff;
+    }
+
+    public Duration getRetryMaxBackoff() {
+        return retryMaxBackoff;
+    }
+
+    public void setRetryMaxBackoff(Duration retryMaxBackoff) {
+        this.retryMaxBackoff = retryMaxBackoff;
+    }
+}
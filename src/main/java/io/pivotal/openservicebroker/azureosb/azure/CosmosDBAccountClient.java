@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.azure;
+
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountListConnectionStringsResult;
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountListKeysResult;
+import com.microsoft.azure.management.cosmosdb.KeyKind;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive access to the CosmosDB accounts of the broker's Azure subscription.
+ * <p>
+ * Implementations must never block the subscribing thread.
+ */
+public interface CosmosDBAccountClient {
+
+    /**
+     * Emits the account, laid out as the profile describes, once Azure has accepted and completed its creation.
+     */
+    Mono<CosmosDBAccountResource> createAccount(String name, String resourceGroup, CosmosDBAccountProfile profile);
+
+    /**
+     * Completes empty if the account does not exist.
+     */
+    Mono<CosmosDBAccountResource> getAccount(String resourceGroup, String name);
+
+    Flux<CosmosDBAccountResource> listAccounts();
+
+    Mono<Void> deleteAccount(String id);
+
+    Mono<DatabaseAccountListConnectionStringsResult> listConnectionStrings(String resourceGroup, String name);
+
+    Mono<DatabaseAccountListKeysResult> listKeys(String resourceGroup, String name);
+
+    /**
+     * Completes once Azure has replaced the given key of the account with a new one.
+     */
+    Mono<Void> regenerateKey(String resourceGroup, String name, KeyKind keyKind);
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.azure;
+
+import com.microsoft.azure.management.resources.fluentcore.arm.Region;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How a CosmosDB account is laid out in Azure: its regions, consistency level and API. Plans in the catalog refer
+ * to a profile by name.
+ */
+public class CosmosDBAccountProfile {
+
+    public enum Consistency {
+        EVENTUAL, SESSION, BOUNDED_STALENESS, STRONG
+    }
+
+    public enum Api {
+        SQL, MONGO_DB, CASSANDRA, TABLE, GREMLIN
+    }
+
+    /**
+     * Azure region holding the account resource.
+     */
+    private String region;
+
+    /**
+     * Regions accepting writes, in failover order. More than one requires multiple write locations.
+     */
+    private List<String> writeRegions = new ArrayList<>();
+
+    /**
+     * Additional read-only replicas, in failover order after the write regions.
+     */
+    private List<String> readRegions = new ArrayList<>();
+
+    private Consistency consistency = Consistency.SESSION;
+
+    /**
+     * Upper bound of versions a read may lag behind with {@link Consistency#BOUNDED_STALENESS}.
+     */
+    private long maxStalenessPrefix = 100_000;
+
+    /**
+     * Upper bound of seconds a read may lag behind with {@link Consistency#BOUNDED_STALENESS}.
+     */
+    private int maxIntervalInSeconds = 300;
+
+    private Api api = Api.SQL;
+
+    /**
+     * Whether every write region accepts writes at the same time (multi-master).
+     */
+    private boolean multipleWriteLocations = false;
+
+    /**
+     * @return the reasons this profile cannot be provisioned, empty if it can
+     */
+    public List<String> validate() {
+        List<String> problems = new ArrayList<>();
+        if (region == null) {
+            problems.add("region is required");
+        } else if (Region.findByLabelOrName(region) == null) {
+            problems.add("unknown region " + region);
+        }
+        if (writeRegions.isEmpty()) {
+            problems.add("at least one write region is required");
+        }
+        if (writeRegions.size() > 1 && !multipleWriteLocations) {
+            problems.add("several write regions require multiple-write-locations");
+        }
+        Set<String> seen = new HashSet<>();
+        for (String replica : allRegions()) {
+            if (Region.findByLabelOrName(replica) == null) {
+                problems.add("unknown region " + replica);
+            } else if (!seen.add(Region.findByLabelOrName(replica).name())) {
+                problems.add("region " + replica + " is listed more than once");
+            }
+        }
+        if (consistency == Consistency.STRONG && multipleWriteLocations) {
+            problems.add("strong consistency cannot be combined with multiple write locations");
+        }
+        return problems;
+    }
+
+    private List<String> allRegions() {
+        List<String> regions = new ArrayList<>(writeRegions);
+        regions.addAll(readRegions);
+        return regions;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public List<String> getWriteRegions() {
+        return writeRegions;
+    }
+
+    public void setWriteRegions(List<String> writeRegions) {
+        this.writeRegions = writeRegions;
+    }
+
+    public List<String> getReadRegions() {
+        return readRegions;
+    }
+
+    public void setReadRegions(List<String> readRegions) {
+        this.readRegions = readRegions;
+    }
+
+    public Consistency getConsistency() {
+        return consistency;
+    }
+
+    public void setConsistency(Consistency consistency) {
+        this.consistency = consistency;
+    }
+
+    public long getMaxStalenessPrefix() {
+        return maxStalenessPrefix;
+    }
+
+    public void setMaxStalenessPrefix(long maxStalenessPrefix) {
+        this.maxStalenessPrefix = maxStalenessPrefix;
+    }
+
+    public int getMaxIntervalInSeconds() {
+        return maxIntervalInSeconds;
+    }
+
+    public void setMaxIntervalInSeconds(int maxIntervalInSeconds) {
+        this.maxIntervalInSeconds = maxIntervalInSeconds;
+    }
+
+    public Api getApi() {
+        return api;
+    }
+
+    public void setApi(Api api) {
+        this.api = api;
+    }
+
+    public boolean isMultipleWriteLocations() {
+        return multipleWriteLocations;
+    }
+
+    public void setMultipleWriteLocations(boolean multipleWriteLocations) {
+        this.multipleWriteLocations = multipleWriteLocations;
+    }
+}
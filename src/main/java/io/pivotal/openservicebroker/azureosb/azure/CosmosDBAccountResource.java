@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.azure;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The parts of an Azure CosmosDB account the broker cares about, detached from the Azure SDK model.
+ */
+public class CosmosDBAccountResource {
+
+    /**
+     * Marks accounts created by the broker, so they can be told apart from other accounts in the subscription.
+     */
+    public static final String MANAGED_BY_TAG = "managed-by";
+
+    public static final String MANAGED_BY = "azure-open-service-broker";
+
+    public static final String INSTANCE_ID_TAG = "service-instance-id";
+
+    private final String id;
+
+    private final String name;
+
+    private final String resourceGroupName;
+
+    private final Map<String, String> tags;
+
+    public CosmosDBAccountResource(String id, String name, String resourceGroupName, Map<String, String> tags) {
+        this.id = id;
+        this.name = name;
+        this.resourceGroupName = resourceGroupName;
+        this.tags = tags == null ? Collections.emptyMap() : tags;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getResourceGroupName() {
+        return resourceGroupName;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public boolean isBrokerManaged() {
+        return MANAGED_BY.equals(tags.get(MANAGED_BY_TAG));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountProfile;
+import io.pivotal.openservicebroker.azureosb.catalog.CatalogProperties.PlanDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+import org.springframework.cloud.servicebroker.model.catalog.Plan;
+import org.springframework.cloud.servicebroker.model.catalog.ServiceDefinition;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.DigestUtils;
+import org.yaml.snakeyaml.Yaml;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The broker's catalog, built from {@link CatalogProperties} and the optional plan metadata file.
+ * <p>
+ * The catalog and its JSON body are built once at startup and again after a configuration refresh. A refresh that
+ * yields an invalid catalog is logged and the previous catalog stays in place.
+ */
+public class BrokerCatalog implements CatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BrokerCatalog.class);
+
+    private final CatalogProperties properties;
+
+    private final ResourceLoader resourceLoader;
+
+    private final ObjectMapper objectMapper;
+
+    private volatile CatalogSnapshot snapshot;
+
+    public BrokerCatalog(CatalogProperties properties, ResourceLoader resourceLoader, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.snapshot = build();
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void refresh() {
+        try {
+            snapshot = build();
+            logger.info("Rebuilt the catalog, ETag {}", snapshot.getEtag());
+        } catch (RuntimeException e) {
+            logger.error("Rebuilding the catalog failed, keeping the previous one", e);
+        }
+    }
+
+    @Override
+    public Mono<Catalog> getCatalog() {
+        return Mono.just(snapshot.getCatalog());
+    }
+
+    @Override
+    public Mono<ServiceDefinition> getServiceDefinition(String serviceId) {
+        return Mono.justOrEmpty(snapshot.getCatalog().getServiceDefinitions().stream()
+                .filter(serviceDefinition -> serviceDefinition.getId().equals(serviceId))
+                .findFirst());
+    }
+
+    public CosmosDBAccountProfile profileFor(String planId) {
+        return snapshot.getPlanProfiles().profileFor(planId);
+    }
+
+    CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private CatalogSnapshot build() {
+        PlanProfiles planProfiles = new PlanProfiles(properties);
+        Map<String, Map<String, Object>> planMetadata = loadPlanMetadata();
+
+        List<Plan> plans = new ArrayList<>();
+        for (PlanDefinition plan : properties.getPlans()) {
+            Map<String, Object> metadata = metadata(planProfiles.profileFor(plan.getId()));
+            metadata.putAll(planMetadata.getOrDefault(plan.getId(), Collections.emptyMap()));
+            plans.add(Plan.builder()
+                    .id(plan.getId())
+                    .name(plan.getName())
+                    .description(plan.getDescription())
+                    .free(plan.isFree())
+                    .metadata(metadata)
+                    .build());
+        }
+
+        Catalog catalog = Catalog.builder()
+                .serviceDefinitions(ServiceDefinition.builder()
+                        .id("cosmosdb")
+                        .name("CosmosDB")
+                        .description("CosmosDB Service Broker")
+                        .bindable(true)
+                        .planUpdateable(false)
+                        .tags("cosmosdb", "database")
+                        .plans(plans)
+                        .build())
+                .build();
+
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(catalog);
+            return new CatalogSnapshot(catalog, planProfiles, body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the catalog", e);
+        }
+    }
+
+    /**
+     * Lets teams compare plans by where their data lives and how it is replicated.
+     */
+    private static Map<String, Object> metadata(CosmosDBAccountProfile profile) {
+        List<String> regions = new ArrayList<>(profile.getWriteRegions());
+        regions.addAll(profile.getReadRegions());
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("regions", regions);
+        metadata.put("writeRegions", profile.getWriteRegions());
+        metadata.put("consistency", profile.getConsistency().name());
+        metadata.put("api", profile.getApi().name());
+        metadata.put("multipleWriteLocations", profile.isMultipleWriteLocations());
+        return metadata;
+    }
+
+    /**
+     * Reads the plan metadata file, a map of plan ids to the metadata merged into those plans.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, Object>> loadPlanMetadata() {
+        if (properties.getPlanMetadataLocation() == null) {
+            return Collections.emptyMap();
+        }
+        Resource resource = resourceLoader.getResource(properties.getPlanMetadataLocation());
+        try (InputStream inputStream = resource.getInputStream()) {
+            Map<String, Map<String, Object>> metadata = new Yaml().load(inputStream);
+            if (metadata == null) {
+                return Collections.emptyMap();
+            }
+            for (String planId : metadata.keySet()) {
+                if (properties.getPlans().stream().noneMatch(plan -> planId.equals(plan.getId()))) {
+                    throw new IllegalStateException("Plan metadata in " + resource + " refers to unknown plan " + planId);
+                }
+            }
+            return metadata;
+        } catch (IOException | ClassCastException e) {
+            throw new IllegalStateException("Could not read plan metadata from " + resource, e);
+        }
+    }
+}
@@ -1,37 +1,22 @@
 package io.pivotal.openservicebroker.azureosb.catalog;
 
-import org.springframework.cloud.servicebroker.model.catalog.Catalog;
-import org.springframework.cloud.servicebroker.model.catalog.Plan;
-import org.springframework.cloud.servicebroker.model.catalog.ServiceDefinition;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
 
 @Configuration
+@EnableConfigurationProperties(CatalogProperties.class)
 public class CatalogConfiguration {
 
     @Bean
-    public Catalog catalog() {
-        return Catalog.builder()
-                .serviceDefinitions(cosmosDbService())
-                .build();
+    public BrokerCatalog brokerCatalog(CatalogProperties properties, ResourceLoader resourceLoader, ObjectMapper objectMapper) {
+        return new BrokerCatalog(properties, resourceLoader, objectMapper);
     }
 
-    private ServiceDefinition cosmosDbService() {
-        Plan database = Plan.builder()
-                .id("db-small")
-                .name("db-small")
-                .description("Provisions a new CosmosDB database on Azure")
-                .free(true)
-                .build();
-
-        return ServiceDefinition.builder()
-                .id("cosmosdb")
-                .name("CosmosDB")
-                .description("CosmosDB Service Broker")
-                .bindable(true)
-                .planUpdateable(false)
-                .tags("cosmosdb", "database")
-                .plans(database)
-                .build();
+    @Bean
+    public CatalogWebFilter catalogWebFilter(BrokerCatalog brokerCatalog) {
+        return new CatalogWebFilter(brokerCatalog);
     }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.catalog;
+
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountProfile;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "broker.catalog")
+public class CatalogProperties {
+
+    /**
+     * Plans of the CosmosDB service, in the order the marketplace lists them.
+     */
+    private List<PlanDefinition> plans = new ArrayList<>();
+
+    /**
+     * Provisioning profiles by name, referenced by the plans.
+     */
+    private Map<String, CosmosDBAccountProfile> profiles = new LinkedHashMap<>();
+
+    /**
+     * Optional location of a YAML file with additional metadata per plan id, e.g. {@code file:/config/plans.yml}.
+     * It is read at startup and whenever the configuration is refreshed.
+     */
+    private String planMetadataLocation;
+
+    public List<PlanDefinition> getPlans() {
+        return plans;
+    }
+
+    public void setPlans(List<PlanDefinition> plans) {
+        this.plans = plans;
+    }
+
+    public Map<String, CosmosDBAccountProfile> getProfiles() {
+        return profiles;
+    }
+
+    public void setProfiles(Map<String, CosmosDBAccountProfile> profiles) {
+        this.profiles = profiles;
+    }
+
+    public String getPlanMetadataLocation() {
+        return planMetadataLocation;
+    }
+
+    public void setPlanMetadataLocation(String planMetadataLocation) {
+        this.planMetadataLocation = planMetadataLocation;
+    }
+
+    public static class PlanDefinition {
+
+        private String id;
+
+        private String name;
+
+        private String description;
+
+        private boolean free = true;
+
+        /**
+         * Name of the provisioning profile accounts of this plan are created with.
+         */
+        private String profile;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public boolean isFree() {
+            return free;
+        }
+
+        public void setFree(boolean free) {
+            this.free = free;
+        }
+
+        public String getProfile() {
+            return profile;
+        }
+
+        public void setProfile(String profile) {
+            this.profile = profile;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.catalog;
+
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+
+/**
+ * A catalog together with its serialized response body, so that the body is encoded once rather than per request.
+ */
+class CatalogSnapshot {
+
+    private final Catalog catalog;
+
+    private final PlanProfiles planProfiles;
+
+    private final byte[] body;
+
+    private final String etag;
+
+    CatalogSnapshot(Catalog catalog, PlanProfiles planProfiles, byte[] body, String etag) {
+        this.catalog = catalog;
+        this.planProfiles = planProfiles;
+        this.body = body;
+        this.etag = etag;
+    }
+
+    Catalog getCatalog() {
+        return catalog;
+    }
+
+    PlanProfiles getPlanProfiles() {
+        return planProfiles;
+    }
+
+    /**
+     * Callers must not modify the returned array.
+     */
+    byte[] getBody() {
+        return body;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.catalog;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Answers {@code GET /v2/catalog} with the pre-encoded body of the {@link BrokerCatalog}, tagged with a strong ETag.
+ * Requests whose {@code If-None-Match} carries the current ETag get an empty {@code 304 Not Modified}.
+ */
+public class CatalogWebFilter implements WebFilter {
+
+    private static final String CATALOG_PATH = "/v2/catalog";
+
+    private final BrokerCatalog brokerCatalog;
+
+    public CatalogWebFilter(BrokerCatalog brokerCatalog) {
+        this.brokerCatalog = brokerCatalog;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || !isCatalogPath(request.getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+
+        CatalogSnapshot snapshot = brokerCatalog.getSnapshot();
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.setETag(snapshot.getEtag());
+        headers.setCacheControl("no-cache");
+
+        if (matches(request.getHeaders().getIfNoneMatch(), snapshot.getEtag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        headers.setContentLength(snapshot.getBody().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(snapshot.getBody())));
+    }
+
+    /**
+     * Platforms may prefix the broker's paths with a platform instance id.
+     */
+    private static boolean isCatalogPath(String path) {
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path.equals(CATALOG_PATH)
+                || (path.endsWith(CATALOG_PATH) && path.lastIndexOf('/', path.length() - CATALOG_PATH.length() - 1) == 0);
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        return ifNoneMatch.contains(etag) || ifNoneMatch.contains("*");
+    }
+}
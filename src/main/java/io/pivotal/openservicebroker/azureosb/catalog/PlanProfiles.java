@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.catalog;
+
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountProfile;
+import io.pivotal.openservicebroker.azureosb.catalog.CatalogProperties.PlanDefinition;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the provisioning profile of a plan. The configuration is checked whenever the catalog is built, so that a
+ * plan with a missing or invalid profile fails the deployment instead of a provisioning request.
+ */
+class PlanProfiles {
+
+    private final Map<String, CosmosDBAccountProfile> profilesByPlanId = new LinkedHashMap<>();
+
+    PlanProfiles(CatalogProperties properties) {
+        List<String> problems = new ArrayList<>();
+        Set<String> planNames = new HashSet<>();
+
+        if (properties.getPlans().isEmpty()) {
+            problems.add("no plans are configured under broker.catalog.plans");
+        }
+        for (PlanDefinition plan : properties.getPlans()) {
+            if (plan.getId() == null || plan.getName() == null) {
+                problems.add("every plan needs an id and a name");
+                continue;
+            }
+            if (profilesByPlanId.containsKey(plan.getId()) || !planNames.add(plan.getName())) {
+                problems.add("plan " + plan.getId() + " is defined more than once");
+            }
+            CosmosDBAccountProfile profile = properties.getProfiles().get(plan.getProfile());
+            if (profile == null) {
+                problems.add("plan " + plan.getId() + " refers to unknown profile " + plan.getProfile());
+                continue;
+            }
+            profilesByPlanId.put(plan.getId(), profile);
+        }
+        properties.getProfiles().forEach((name, profile) ->
+                profile.validate().forEach(problem -> problems.add("profile " + name + ": " + problem)));
+
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Invalid broker.catalog configuration: " + String.join(", ", problems));
+        }
+    }
+
+    /**
+     * Tasks enqueued before plans had profiles carry no plan id; they get the first plan's profile.
+     */
+    CosmosDBAccountProfile profileFor(String planId) {
+        if (planId == null) {
+            return profilesByPlanId.values().iterator().next();
+        }
+        CosmosDBAccountProfile profile = profilesByPlanId.get(planId);
+        if (profile == null) {
+            throw new ServiceBrokerException("No provisioning profile for plan " + planId);
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.cloudfoundry;
+
+import io.pivotal.openservicebroker.azureosb.metrics.BrokerMetrics;
+import io.pivotal.openservicebroker.azureosb.resilience.DependencyGuard;
+import io.pivotal.openservicebroker.azureosb.tracing.BrokerTracing;
+import org.cloudfoundry.client.CloudFoundryClient;
+import org.cloudfoundry.client.v2.ClientV2Exception;
+import org.cloudfoundry.client.v2.organizations.GetOrganizationRequest;
+import org.cloudfoundry.client.v2.spaces.GetSpaceRequest;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Looks organizations and spaces up directly by GUID with one Cloud Controller call each,
+ * instead of listing and filtering all of them, behind the Cloud Controller {@link DependencyGuard}.
+ */
+public class CloudFoundryClientNameLookup implements CloudFoundryNameLookup {
+
+    private final CloudFoundryClient cloudFoundryClient;
+
+    private final BrokerMetrics brokerMetrics;
+
+    private final BrokerTracing brokerTracing;
+
+    private final DependencyGuard guard;
+
+    public CloudFoundryClientNameLookup(CloudFoundryClient cloudFoundryClient, BrokerMetrics brokerMetrics,
+                                        BrokerTracing brokerTracing, DependencyGuard guard) {
+        this.cloudFoundryClient = cloudFoundryClient;
+        this.brokerMetrics = brokerMetrics;
+        this.brokerTracing = brokerTracing;
+        this.guard = guard;
+    }
+
+    @Override
+    public Mono<String> getOrganizationName(String organizationGuid) {
+        return observed("get_organization", cloudFoundryClient.organizations()
+                .get(GetOrganizationRequest.builder().organizationId(organizationGuid).build())
+                .map(response -> response.getEntity().getName())
+                .onErrorResume(CloudFoundryClientNameLookup::isNotFound, throwable -> Mono.empty()));
+    }
+
+    @Override
+    public Mono<String> getSpaceName(String spaceGuid) {
+        return observed("get_space", cloudFoundryClient.spaces()
+                .get(GetSpaceRequest.builder().spaceId(spaceGuid).build())
+                .map(response -> response.getEntity().getName())
+                .onErrorResume(CloudFoundryClientNameLookup::isNotFound, throwable -> Mono.empty()));
+    }
+
+    private <T> Mono<T> observed(String operation, Mono<T> call) {
+        return brokerTracing.span("cloudfoundry " + operation, brokerMetrics.timeCloudFoundryRequest(operation, guard.protect(call)));
+    }
+
+    /**
+     * Server errors, timeouts and I/O failures count against the Cloud Controller; client errors do not.
+     */
+    public static boolean isTransient(Throwable throwable) {
+        if (throwable instanceof ClientV2Exception) {
+            Integer status = ((ClientV2Exception) throwable).getStatusCode();
+            return status == null || status >= 500;
+        }
+        return throwable instanceof TimeoutException || throwable instanceof IOException;
+    }
+
+    private static boolean isNotFound(Throwable throwable) {
+        return throwable instanceof ClientV2Exception && Integer.valueOf(404).equals(((ClientV2Exception) throwable).getStatusCode());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.cloudfoundry;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "broker.cloudfoundry.name-cache")
+public class CloudFoundryNameCacheProperties {
+
+    private long maximumSize = 10_000;
+
+    /**
+     * How long a resolved name is served at most.
+     */
+    private Duration timeToLive = Duration.ofHours(1);
+
+    /**
+     * Age after which a name is reloaded in the background while the cached one keeps being served.
+     */
+    private Duration refreshAfter = Duration.ofMinutes(10);
+
+    /**
+     * How long an unknown GUID is remembered as unknown.
+     */
+    private Duration negativeTimeToLive = Duration.ofMinutes(1);
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public Duration getRefreshAfter() {
+        return refreshAfter;
+    }
+
+    public void setRefreshAfter(Duration refreshAfter) {
+        this.refreshAfter = refreshAfter;
+    }
+
+    public Duration getNegativeTimeToLive() {
+        return negativeTimeToLive;
+    }
+
+    public void setNegativeTimeToLive(Duration negativeTimeToLive) {
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+}
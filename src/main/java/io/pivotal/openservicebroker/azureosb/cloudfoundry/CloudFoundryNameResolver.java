@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.cloudfoundry;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Caches organization and space names in front of a {@link CloudFoundryNameLookup}.
+ * <p>
+ * Names are refreshed in the background once they reach {@code refresh-after} while the stale value is still served,
+ * unknown GUIDs are cached for a shorter time, and hit rates are published as {@code cache.*} meters named
+ * {@code cloudfoundry.organizations} and {@code cloudfoundry.spaces}.
+ */
+public class CloudFoundryNameResolver {
+
+    private final AsyncLoadingCache<String, Optional<String>> organizationNames;
+
+    private final AsyncLoadingCache<String, Optional<String>> spaceNames;
+
+    public CloudFoundryNameResolver(CloudFoundryNameLookup lookup, CloudFoundryNameCacheProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.organizationNames = buildCache(lookup::getOrganizationName, properties);
+        this.spaceNames = buildCache(lookup::getSpaceName, properties);
+        CaffeineCacheMetrics.monitor(meterRegistry, organizationNames.synchronous(), "cloudfoundry.organizations");
+        CaffeineCacheMetrics.monitor(meterRegistry, spaceNames.synchronous(), "cloudfoundry.spaces");
+    }
+
+    /**
+     * Completes empty if the organization does not exist.
+     */
+    public Mono<String> resolveOrganizationName(String organizationGuid) {
+        return resolve(organizationNames, organizationGuid);
+    }
+
+    /**
+     * Completes empty if the space does not exist.
+     */
+    public Mono<String> resolveSpaceName(String spaceGuid) {
+        return resolve(spaceNames, spaceGuid);
+    }
+
+    private static Mono<String> resolve(AsyncLoadingCache<String, Optional<String>> cache, String guid) {
+        return Mono.defer(() -> Mono.fromFuture(cache.get(guid)))
+                .flatMap(name -> Mono.justOrEmpty(name));
+    }
+
+    private static AsyncLoadingCache<String, Optional<String>> buildCache(Function<String, Mono<String>> lookup,
+                                                                         CloudFoundryNameCacheProperties properties) {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new NameExpiry(properties))
+                .refreshAfterWrite(properties.getRefreshAfter().toNanos(), TimeUnit.NANOSECONDS)
+                .recordStats()
+                .buildAsync((guid, executor) -> lookup.apply(guid)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .toFuture());
+    }
+
+    private static final class NameExpiry implements Expiry<String, Optional<String>> {
+
+        private final long timeToLive;
+
+        private final long negativeTimeToLive;
+
+        private NameExpiry(CloudFoundryNameCacheProperties properties) {
+            this.timeToLive = properties.getTimeToLive().toNanos();
+            this.negativeTimeToLive = properties.getNegativeTimeToLive().toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String guid, Optional<String> name, long currentTime) {
+            return name.isPresent() ? timeToLive : negativeTimeToLive;
+        }
+
+        @Override
+        public long expireAfterUpdate(String guid, Optional<String> name, long currentTime, long currentDuration) {
+            return expireAfterCreate(guid, name, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String guid, Optional<String> name, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the credentials of a CosmosDB account in memory for a limited time, keyed by resource group, instance id and
+ * credentials version. After a key rotation, the new version misses the cache on every broker node.
+ * <p>
+ * Concurrent misses for the same account are coalesced: only the first caller loads from Azure, the others wait
+ * for its result. Hit, miss and load-time statistics are published as {@code cache.*} meters named
+ * {@value #CACHE_NAME}.
+ */
+public class CredentialsCache {
+
+    static final String CACHE_NAME = "cosmosdb.credentials";
+
+    private final AsyncCache<Key, Map<String, Object>> cache;
+
+    public CredentialsCache(CredentialsCacheProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive().toNanos(), TimeUnit.NANOSECONDS)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached credentials, subscribing to the loader on a miss. Failed loads are not cached.
+     */
+    public Mono<Map<String, Object>> get(String resourceGroup, String instanceId, int credentialsVersion,
+                                         Supplier<Mono<Map<String, Object>>> loader) {
+        return Mono.defer(() -> Mono.fromFuture(cache.get(new Key(resourceGroup, instanceId, credentialsVersion),
+                (key, executor) -> loader.get().toFuture())));
+    }
+
+    /**
+     * Removes all cached versions of the account's credentials.
+     */
+    public void invalidate(String resourceGroup, String instanceId) {
+        cache.synchronous().asMap().keySet().removeIf(key -> Objects.equals(resourceGroup, key.resourceGroup)
+                && Objects.equals(instanceId, key.instanceId));
+    }
+
+    private static final class Key {
+
+        private final String resourceGroup;
+
+        private final String instanceId;
+
+        private final int credentialsVersion;
+
+        private Key(String resourceGroup, String instanceId, int credentialsVersion) {
+            this.resourceGroup = resourceGroup;
+            this.instanceId = instanceId;
+            this.credentialsVersion = credentialsVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return credentialsVersion == key.credentialsVersion && Objects.equals(resourceGroup, key.resourceGroup)
+                    && Objects.equals(instanceId, key.instanceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourceGroup, instanceId, credentialsVersion);
+        }
+    }
+}
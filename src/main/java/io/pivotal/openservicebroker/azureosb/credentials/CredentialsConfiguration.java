@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.data.InstanceLocks;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({CredentialsCacheProperties.class, KeyRotationProperties.class, CredentialsStoreProperties.class})
+public class CredentialsConfiguration {
+
+    @Bean
+    public CredentialsCache credentialsCache(CredentialsCacheProperties properties, MeterRegistry meterRegistry) {
+        return new CredentialsCache(properties, meterRegistry);
+    }
+
+    @Bean
+    public CredentialsStore credentialsStore(CredentialsStoreProperties properties) {
+        return new CredentialsStore(properties);
+    }
+
+    @Bean
+    public KeyRotation keyRotation(CosmosDBAccountClient cosmosDBAccountClient, ServiceInstanceRepository instanceRepository,
+                                   RepositoryExecutor repositoryExecutor, InstanceLocks instanceLocks,
+                                   CredentialsCache credentialsCache, KeyRotationProperties properties) {
+        return new KeyRotation(cosmosDBAccountClient, instanceRepository, repositoryExecutor, instanceLocks, credentialsCache,
+                properties);
+    }
+
+    @Bean
+    public KeyRotationEndpoint keyRotationEndpoint(KeyRotation keyRotation) {
+        return new KeyRotationEndpoint(keyRotation);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Envelope encryption for credentials stored in the broker database.
+ * <p>
+ * Every record is encrypted with AES-GCM under its own random data key, which in turn is encrypted under the master
+ * key. The record is bound to its service instance as additional authenticated data, so it cannot be moved to
+ * another instance's row. A record is stored as {@code v1:<key id>:<key iv>:<wrapped key>:<iv>:<ciphertext>}, all
+ * parts Base64-encoded except the key id.
+ */
+public class CredentialsStore {
+
+    private static final String VERSION = "v1";
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final int TAG_BITS = 128;
+
+    private static final int IV_BYTES = 12;
+
+    private static final int DATA_KEY_BYTES = 32;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<LinkedHashMap<String, Object>>() {
+    };
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final String keyId;
+
+    private final Map<String, SecretKeySpec> masterKeys = new HashMap<>();
+
+    public CredentialsStore(CredentialsStoreProperties properties) {
+        this.keyId = properties.getKeyId();
+        if (properties.getMasterKey() != null && !properties.getMasterKey().isEmpty()) {
+            if (keyId == null || keyId.isEmpty() || keyId.contains(":")) {
+                throw new IllegalStateException("broker.credentials-store.key-id must be set and must not contain ':'");
+            }
+            masterKeys.put(keyId, toKey(keyId, properties.getMasterKey()));
+        }
+        properties.getRetiredKeys().forEach((retiredKeyId, key) -> masterKeys.putIfAbsent(retiredKeyId, toKey(retiredKeyId, key)));
+    }
+
+    /**
+     * Whether credentials can be stored, i.e. a master key is configured.
+     */
+    public boolean isEnabled() {
+        return masterKeys.containsKey(keyId);
+    }
+
+    public String encrypt(String instanceId, Map<String, Object> credentials) {
+        try {
+            byte[] dataKey = randomBytes(DATA_KEY_BYTES);
+            byte[] keyIv = randomBytes(IV_BYTES);
+            byte[] wrappedKey = cipher(Cipher.ENCRYPT_MODE, masterKeys.get(keyId), keyIv, keyId).doFinal(dataKey);
+
+            byte[] iv = randomBytes(IV_BYTES);
+            byte[] ciphertext = cipher(Cipher.ENCRYPT_MODE, new SecretKeySpec(dataKey, "AES"), iv, instanceId)
+                    .doFinal(objectMapper.writeValueAsBytes(credentials));
+
+            Base64.Encoder encoder = Base64.getEncoder();
+            return String.join(":", VERSION, keyId, encoder.encodeToString(keyIv), encoder.encodeToString(wrappedKey),
+                    encoder.encodeToString(iv), encoder.encodeToString(ciphertext));
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalStateException("Could not encrypt the credentials of service instance " + instanceId, e);
+        }
+    }
+
+    public Map<String, Object> decrypt(String instanceId, String record) {
+        String[] parts = record.split(":");
+        if (parts.length != 6 || !VERSION.equals(parts[0])) {
+            throw new IllegalStateException("Unsupported credentials record for service instance " + instanceId);
+        }
+        SecretKeySpec masterKey = masterKeys.get(parts[1]);
+        if (masterKey == null) {
+            throw new IllegalStateException("Credentials of service instance " + instanceId + " are encrypted with unknown key " + parts[1]);
+        }
+
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] dataKey = cipher(Cipher.DECRYPT_MODE, masterKey, decoder.decode(parts[2]), parts[1])
+                    .doFinal(decoder.decode(parts[3]));
+            byte[] plaintext = cipher(Cipher.DECRYPT_MODE, new SecretKeySpec(dataKey, "AES"), decoder.decode(parts[4]), instanceId)
+                    .doFinal(decoder.decode(parts[5]));
+            return objectMapper.readValue(plaintext, MAP_TYPE);
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Could not decrypt the credentials of service instance " + instanceId, e);
+        }
+    }
+
+    private static Cipher cipher(int mode, SecretKeySpec key, byte[] iv, String associatedData) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static SecretKeySpec toKey(String keyId, String base64) {
+        byte[] key;
+        try {
+            key = Base64.getDecoder().decode(base64.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Master key " + keyId + " is not valid Base64", e);
+        }
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalStateException("Master key " + keyId + " must be 128, 192 or 256 bits long");
+        }
+        return new SecretKeySpec(key, "AES");
+    }
+}
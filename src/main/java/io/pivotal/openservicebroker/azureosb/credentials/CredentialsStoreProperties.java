@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "broker.credentials-store")
+public class CredentialsStoreProperties {
+
+    /**
+     * Base64-encoded AES key (128, 192 or 256 bit) that wraps the data keys of stored credentials. Without one,
+     * credentials are not stored and every bind fetches them from Azure.
+     */
+    private String masterKey;
+
+    /**
+     * Identifies the master key in stored credentials, so it can be replaced while older records stay readable.
+     */
+    private String keyId = "1";
+
+    /**
+     * Previous master keys by key id, only used to read credentials stored before the master key was replaced.
+     */
+    private Map<String, String> retiredKeys = new LinkedHashMap<>();
+
+    public String getMasterKey() {
+        return masterKey;
+    }
+
+    public void setMasterKey(String masterKey) {
+        this.masterKey = masterKey;
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public void setKeyId(String keyId) {
+        this.keyId = keyId;
+    }
+
+    public Map<String, String> getRetiredKeys() {
+        return retiredKeys;
+    }
+
+    public void setRetiredKeys(Map<String, String> retiredKeys) {
+        this.retiredKeys = retiredKeys;
+    }
+}
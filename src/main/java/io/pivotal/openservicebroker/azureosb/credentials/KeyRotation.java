@@ -0,0 +1,188 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import com.microsoft.azure.management.cosmosdb.KeyKind;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.data.InstanceLocks;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import io.pivotal.openservicebroker.azureosb.model.AccountKey;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Rotates the keys of CosmosDB accounts without breaking bound applications.
+ * <p>
+ * A rotation regenerates the standby master and read-only keys, which bindings have not handed out since the previous
+ * rotation because they only carry the active keys, then makes them the active keys and increments the instance's
+ * credentials version. Bindings fetched afterwards carry the new keys; applications still using the previous keys keep
+ * working until the next rotation regenerates them. If a rotation fails halfway, only standby keys have changed and it
+ * can simply be repeated.
+ * Saving the new active keys is retried under the instance lock; should it still fail, the instance keeps serving its
+ * previous keys and is reported as failed, so that its rotation is repeated.
+ */
+public class KeyRotation {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyRotation.class);
+
+    private static final String LOCK_KEY = "broker:key-rotation";
+
+    private final CosmosDBAccountClient cosmosDBAccountClient;
+
+    private final ServiceInstanceRepository instanceRepository;
+
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final InstanceLocks instanceLocks;
+
+    private final CredentialsCache credentialsCache;
+
+    private final KeyRotationProperties properties;
+
+    private final Retry<Object> saveRetry;
+
+    private volatile KeyRotationReport lastReport;
+
+    public KeyRotation(CosmosDBAccountClient cosmosDBAccountClient, ServiceInstanceRepository instanceRepository,
+                       RepositoryExecutor repositoryExecutor, InstanceLocks instanceLocks, CredentialsCache credentialsCache,
+                       KeyRotationProperties properties) {
+        this.cosmosDBAccountClient = cosmosDBAccountClient;
+        this.instanceRepository = instanceRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.instanceLocks = instanceLocks;
+        this.credentialsCache = credentialsCache;
+        this.properties = properties;
+        this.saveRetry = Retry.anyOf(DataAccessException.class)
+                .exponentialBackoff(Duration.ofMillis(100), Duration.ofSeconds(2))
+                .retryMax(properties.getSaveRetries());
+    }
+
+    /**
+     * Rotates the keys of one service instance, holding its lock so that no OSB request changes it meanwhile.
+     */
+    public Mono<KeyRotationResult> rotate(String instanceId) {
+        return instanceLocks.withLock(instanceId, repositoryExecutor.call(() -> instanceRepository.findById(instanceId).orElse(null))
+                .switchIfEmpty(Mono.error(new ServiceInstanceDoesNotExistException(instanceId)))
+                .flatMap(this::rotateKeys));
+    }
+
+    /**
+     * Starts rotating the keys of all service instances in the background, unless a batch is already running on
+     * this node.
+     *
+     * @return the report of the batch, which is updated as it progresses
+     */
+    public synchronized KeyRotationReport rotateAll() {
+        if (lastReport != null && lastReport.isRunning()) {
+            return lastReport;
+        }
+        KeyRotationReport report = new KeyRotationReport();
+        lastReport = report;
+
+        instanceLocks.tryWithLock(LOCK_KEY, properties.getLockLease(), rotateAll(report))
+                .switchIfEmpty(Mono.fromRunnable(() -> logger.warn("Another broker node is already rotating keys")))
+                .onErrorResume(throwable -> {
+                    logger.error("Rotating the keys of all service instances failed", throwable);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> report.finish())
+                .subscribe(finished -> logger.info("Rotated the keys of {} service instances, skipped {}, {} failed",
+                        finished.getRotated(), finished.getSkipped(), finished.getFailed()));
+        return report;
+    }
+
+    /**
+     * @return the report of the last batch started on this node, or {@code null} if there was none
+     */
+    public KeyRotationReport getLastReport() {
+        return lastReport;
+    }
+
+    private Mono<KeyRotationReport> rotateAll(KeyRotationReport report) {
+        return batches()
+                .concatMapIterable(batch -> batch)
+                .flatMap(serviceInstance -> rotate(serviceInstance.getInstanceId())
+                        .onErrorResume(throwable -> Mono.just(KeyRotationResult.failed(serviceInstance.getInstanceId(),
+                                throwable.getMessage()))), properties.getConcurrency())
+                .doOnNext(report::add)
+                .then(Mono.just(report));
+    }
+
+    private Flux<List<ServiceInstance>> batches() {
+        return nextBatch("")
+                .expand(batch -> batch.size() < properties.getBatchSize()
+                        ? Mono.empty()
+                        : nextBatch(batch.get(batch.size() - 1).getInstanceId()));
+    }
+
+    private Mono<List<ServiceInstance>> nextBatch(String afterInstanceId) {
+        return repositoryExecutor.call(() -> instanceRepository.findByInstanceIdGreaterThanOrderByInstanceIdAsc(afterInstanceId,
+                PageRequest.of(0, properties.getBatchSize())))
+                .filter(batch -> !batch.isEmpty());
+    }
+
+    private Mono<KeyRotationResult> rotateKeys(ServiceInstance serviceInstance) {
+        String instanceId = serviceInstance.getInstanceId();
+        String resourceGroup = serviceInstance.getResourceGroup();
+
+        if (serviceInstance.getAzureResourceId() == null || resourceGroup == null) {
+            return Mono.just(KeyRotationResult.skipped(instanceId, "The CosmosDB account has not been provisioned"));
+        }
+
+        AccountKey newKey = serviceInstance.getActiveKey().standby();
+        return cosmosDBAccountClient.regenerateKey(resourceGroup, instanceId, newKey == AccountKey.PRIMARY ? KeyKind.PRIMARY : KeyKind.SECONDARY)
+                .then(cosmosDBAccountClient.regenerateKey(resourceGroup, instanceId,
+                        newKey == AccountKey.PRIMARY ? KeyKind.PRIMARY_READONLY : KeyKind.SECONDARY_READONLY))
+                // the cached credentials list the standby keys too, which have just changed
+                .doOnSuccess(regenerated -> credentialsCache.invalidate(resourceGroup, instanceId))
+                .then(saveRotated(serviceInstance)
+                        .doOnNext(saved -> logger.info("Rotated the keys of Service Instance [{}], now serving its {} keys", instanceId, newKey))
+                        .map(KeyRotationResult::rotated)
+                        .onErrorResume(throwable -> {
+                            logger.error("Regenerated the {} keys of Service Instance [{}] but could not make them the active ones",
+                                    newKey, instanceId, throwable);
+                            return Mono.just(KeyRotationResult.failed(instanceId, "The standby keys were regenerated, but saving them as the active keys failed: "
+                                    + throwable.getMessage()));
+                        }));
+    }
+
+    /**
+     * Saves the rotated instance. Every attempt reloads it, so a save that was committed although it reported an
+     * error is not rotated twice.
+     */
+    private Mono<ServiceInstance> saveRotated(ServiceInstance serviceInstance) {
+        String instanceId = serviceInstance.getInstanceId();
+        return repositoryExecutor.call(() -> {
+            ServiceInstance current = instanceRepository.findById(instanceId)
+                    .orElseThrow(() -> new ServiceInstanceDoesNotExistException(instanceId));
+            return current.getCredentialsVersion() == serviceInstance.getCredentialsVersion()
+                    ? instanceRepository.save(current.withRotatedKeys())
+                    : current;
+        }).retryWhen(saveRetry);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+/**
+ * Rotates CosmosDB account keys at {@code /actuator/keyrotation}: a {@code POST} with an {@code instanceId} rotates
+ * that instance and answers with the result, one without starts a batch over all instances. A {@code GET} shows the
+ * progress of the last batch.
+ */
+@Endpoint(id = "keyrotation")
+public class KeyRotationEndpoint {
+
+    private final KeyRotation keyRotation;
+
+    public KeyRotationEndpoint(KeyRotation keyRotation) {
+        this.keyRotation = keyRotation;
+    }
+
+    @ReadOperation
+    public KeyRotationReport lastReport() {
+        return keyRotation.getLastReport();
+    }
+
+    @WriteOperation
+    public Object rotate(@Nullable String instanceId) {
+        return instanceId != null ? keyRotation.rotate(instanceId) : keyRotation.rotateAll();
+    }
+}
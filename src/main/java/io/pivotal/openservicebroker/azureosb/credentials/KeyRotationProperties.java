@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "broker.key-rotation")
+public class KeyRotationProperties {
+
+    /**
+     * Accounts whose keys are rotated at the same time during a batch rotation. Each rotation makes two ARM calls
+     * on the Azure threads, so this should stay well below {@code broker.azure.threads}.
+     */
+    private int concurrency = 8;
+
+    /**
+     * Service instances read from the database at a time during a batch rotation.
+     */
+    private int batchSize = 100;
+
+    /**
+     * How long a batch rotation may hold the lock that keeps other broker nodes from starting one.
+     */
+    private Duration lockLease = Duration.ofHours(1);
+
+    /**
+     * How often saving an instance's new active keys is retried once its standby keys have been regenerated.
+     */
+    private int saveRetries = 3;
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getLockLease() {
+        return lockLease;
+    }
+
+    public void setLockLease(Duration lockLease) {
+        this.lockLease = lockLease;
+    }
+
+    public int getSaveRetries() {
+        return saveRetries;
+    }
+
+    public void setSaveRetries(int saveRetries) {
+        this.saveRetries = saveRetries;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import io.pivotal.openservicebroker.azureosb.credentials.KeyRotationResult.Status;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Progress of a batch key rotation. Keeps the first {@value #MAX_FAILURES} failures in detail and counts the rest.
+ */
+public class KeyRotationReport {
+
+    static final int MAX_FAILURES = 1000;
+
+    private final Instant startedAt = Instant.now();
+
+    private Instant finishedAt;
+
+    private long rotated;
+
+    private long skipped;
+
+    private long failed;
+
+    private final List<KeyRotationResult> failures = new ArrayList<>();
+
+    synchronized void add(KeyRotationResult result) {
+        if (result.getStatus() == Status.ROTATED) {
+            rotated++;
+        } else if (result.getStatus() == Status.SKIPPED) {
+            skipped++;
+        } else {
+            failed++;
+            if (failures.size() < MAX_FAILURES) {
+                failures.add(result);
+            }
+        }
+    }
+
+    synchronized KeyRotationReport finish() {
+        finishedAt = Instant.now();
+        return this;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public synchronized Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public synchronized boolean isRunning() {
+        return finishedAt == null;
+    }
+
+    public synchronized long getRotated() {
+        return rotated;
+    }
+
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    public synchronized List<KeyRotationResult> getFailures() {
+        return Collections.unmodifiableList(new ArrayList<>(failures));
+    }
+}
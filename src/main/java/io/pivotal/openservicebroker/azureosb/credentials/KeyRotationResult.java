@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import io.pivotal.openservicebroker.azureosb.model.AccountKey;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstance;
+
+/**
+ * The outcome of rotating the keys of one service instance.
+ */
+public class KeyRotationResult {
+
+    public enum Status {
+        ROTATED, SKIPPED, FAILED
+    }
+
+    private final String instanceId;
+
+    private final Status status;
+
+    private final AccountKey activeKey;
+
+    private final Integer credentialsVersion;
+
+    private final String message;
+
+    private KeyRotationResult(String instanceId, Status status, AccountKey activeKey, Integer credentialsVersion, String message) {
+        this.instanceId = instanceId;
+        this.status = status;
+        this.activeKey = activeKey;
+        this.credentialsVersion = credentialsVersion;
+        this.message = message;
+    }
+
+    static KeyRotationResult rotated(ServiceInstance serviceInstance) {
+        return new KeyRotationResult(serviceInstance.getInstanceId(), Status.ROTATED, serviceInstance.getActiveKey(),
+                serviceInstance.getCredentialsVersion(), null);
+    }
+
+    static KeyRotationResult skipped(String instanceId, String message) {
+        return new KeyRotationResult(instanceId, Status.SKIPPED, null, null, message);
+    }
+
+    static KeyRotationResult failed(String instanceId, String message) {
+        return new KeyRotationResult(instanceId, Status.FAILED, null, null, message);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public AccountKey getActiveKey() {
+        return activeKey;
+    }
+
+    public Integer getCredentialsVersion() {
+        return credentialsVersion;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.data;
+
+import io.pivotal.openservicebroker.azureosb.data.repository.InstanceLockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Serializes changes to the same service instance across all broker nodes sharing the database.
+ * <p>
+ * A lock is a row in {@code instance_locks}: the primary key makes taking it atomic on any SQL database, and the lease
+ * lets another node take it over when its holder died. Advisory locks would tie the lock to one pooled connection for
+ * the length of a reactive request, so they are not used.
+ */
+public class InstanceLocks {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstanceLocks.class);
+
+    private final InstanceLockRepository lockRepository;
+
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final LockProperties properties;
+
+    public InstanceLocks(InstanceLockRepository lockRepository, RepositoryExecutor repositoryExecutor, LockProperties properties) {
+        this.lockRepository = lockRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.properties = properties;
+    }
+
+    /**
+     * Runs the action while holding the instance's lock, waiting for it if another request holds it.
+     * Fails with {@link ServiceBrokerConcurrencyException} if the lock does not become free in time.
+     */
+    public <T> Mono<T> withLock(String instanceId, Mono<T> action) {
+        return Mono.defer(() -> {
+            String owner = UUID.randomUUID().toString();
+            return acquire(instanceId, owner)
+                    .then(action)
+                    .doFinally(signal -> release(instanceId, owner));
+        });
+    }
+
+    /**
+     * Runs the action only if the lock is free right now, holding it for at most the given lease time.
+     * Used for broker-wide jobs that one node at a time should run, with a key that cannot be an instance id.
+     *
+     * @return the action's result, or empty if the lock is held elsewhere
+     */
+    public <T> Mono<T> tryWithLock(String key, Duration leaseTime, Mono<T> action) {
+        return Mono.defer(() -> {
+            String owner = UUID.randomUUID().toString();
+            return repositoryExecutor.call(() -> tryAcquire(key, owner, leaseTime))
+                    .filter(acquired -> acquired)
+                    .flatMap(acquired -> action.doFinally(signal -> release(key, owner)));
+        });
+    }
+
+    private Mono<Void> acquire(String instanceId, String owner) {
+        return repositoryExecutor.call(() -> tryAcquire(instanceId, owner, properties.getLeaseTime()))
+                .filter(acquired -> acquired)
+                .repeatWhenEmpty(attempts -> attempts.delayElements(properties.getRetryInterval()))
+                .timeout(properties.getAcquireTimeout())
+                .onErrorMap(TimeoutException.class, throwable -> new ServiceBrokerConcurrencyException(
+                        "Service Instance " + instanceId + " is being changed by another request"))
+                .then();
+    }
+
+    private boolean tryAcquire(String key, String owner, Duration leaseTime) {
+        Instant now = Instant.now();
+        Instant lockedUntil = now.plus(leaseTime);
+        try {
+            lockRepository.insert(key, owner, lockedUntil);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return lockRepository.takeOverExpired(key, owner, lockedUntil, now) == 1;
+        }
+    }
+
+    private void release(String instanceId, String owner) {
+        repositoryExecutor.call(() -> lockRepository.release(instanceId, owner))
+                .subscribe(null, throwable -> logger.warn("Could not release lock on Service Instance [{}], it expires by itself", instanceId, throwable));
+    }
+}
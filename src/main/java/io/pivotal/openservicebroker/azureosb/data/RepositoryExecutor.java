@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.data;
+
+import io.pivotal.openservicebroker.azureosb.tracing.BrokerTracing;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs blocking JPA repository calls on a dedicated scheduler and exposes their results as {@link Mono}s,
+ * so that no JDBC round-trip ever happens on a WebFlux event-loop thread. Each round-trip made on behalf of a traced request
+ * gets a span of its own.
+ */
+public class RepositoryExecutor implements DisposableBean {
+
+    private static final String SPAN_NAME = "jpa";
+
+    private final Scheduler scheduler;
+
+    private final BrokerTracing brokerTracing;
+
+    public RepositoryExecutor(Scheduler scheduler, BrokerTracing brokerTracing) {
+        this.scheduler = scheduler;
+        this.brokerTracing = brokerTracing;
+    }
+
+    /**
+     * @return a {@link Mono} emitting the callable's result, or completing empty if it returns {@code null}
+     */
+    public <T> Mono<T> call(Callable<T> callable) {
+        return brokerTracing.childSpan(SPAN_NAME, Mono.fromCallable(callable).subscribeOn(scheduler));
+    }
+
+    public Mono<Void> run(Runnable runnable) {
+        return brokerTracing.childSpan(SPAN_NAME, Mono.<Void>fromRunnable(runnable).subscribeOn(scheduler));
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -16,11 +16,29 @@
 
 package io.pivotal.openservicebroker.azureosb.data;
 
+import io.pivotal.openservicebroker.azureosb.data.repository.InstanceLockRepository;
 import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import io.pivotal.openservicebroker.azureosb.support.BoundedSchedulers;
+import io.pivotal.openservicebroker.azureosb.tracing.BrokerTracing;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 @Configuration
 @EnableJpaRepositories(basePackageClasses = ServiceInstanceRepository.class)
+@EnableConfigurationProperties({PersistenceProperties.class, LockProperties.class})
 public class ServicesRepositoryConfiguration {
+
+    @Bean
+    public RepositoryExecutor repositoryExecutor(PersistenceProperties properties, BrokerTracing brokerTracing) {
+        return new RepositoryExecutor(BoundedSchedulers.newBoundedScheduler("broker-persistence",
+                properties.getThreads(), properties.getQueueCapacity()), brokerTracing);
+    }
+
+    @Bean
+    public InstanceLocks instanceLocks(InstanceLockRepository lockRepository, RepositoryExecutor repositoryExecutor,
+                                       LockProperties properties) {
+        return new InstanceLocks(lockRepository, repositoryExecutor, properties);
+    }
 }
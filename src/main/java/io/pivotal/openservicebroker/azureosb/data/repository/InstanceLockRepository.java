@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.data.repository;
+
+import io.pivotal.openservicebroker.azureosb.model.InstanceLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface InstanceLockRepository extends JpaRepository<InstanceLock, String> {
+
+    /**
+     * Takes a free lock. Fails with a constraint violation if any node, including this one, holds a lease on the key.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into instance_locks (lock_key, locked_by, locked_until) values (:lockKey, :owner, :lockedUntil)", nativeQuery = true)
+    void insert(@Param("lockKey") String lockKey, @Param("owner") String owner, @Param("lockedUntil") Instant lockedUntil);
+
+    /**
+     * Takes over a lock whose lease has run out.
+     *
+     * @return 1 if the lock was taken over, 0 if it is still held
+     */
+    @Transactional
+    @Modifying
+    @Query("update InstanceLock l set l.lockedBy = :owner, l.lockedUntil = :lockedUntil where l.lockKey = :lockKey and l.lockedUntil < :now")
+    int takeOverExpired(@Param("lockKey") String lockKey, @Param("owner") String owner, @Param("lockedUntil") Instant lockedUntil,
+                        @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from InstanceLock l where l.lockKey = :lockKey and l.lockedBy = :owner")
+    int release(@Param("lockKey") String lockKey, @Param("owner") String owner);
+}
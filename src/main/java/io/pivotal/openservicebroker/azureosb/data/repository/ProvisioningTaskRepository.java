@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.data.repository;
+
+import io.pivotal.openservicebroker.azureosb.model.ProvisioningTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface ProvisioningTaskRepository extends JpaRepository<ProvisioningTask, Long> {
+
+    List<ProvisioningTask> findByStartedAtIsNullOrderBySequenceAsc(Pageable pageable);
+
+    Optional<ProvisioningTask> findFirstByInstanceIdAndStartedAtIsNull(String instanceId);
+
+    long countByStartedAtIsNullAndSequenceLessThan(Long sequence);
+
+    long countByStartedAtIsNotNull();
+
+    /**
+     * Removes a task unless a node has claimed it in the meantime.
+     *
+     * @return 1 if the task was removed, 0 if it has started or is gone
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from ProvisioningTask t where t.sequence = :sequence and t.startedAt is null")
+    int deleteWaiting(@Param("sequence") Long sequence);
+
+    /**
+     * Marks a waiting task as started by the given node, unless another node got to it first.
+     *
+     * @return 1 if the task was claimed, 0 if it was not waiting anymore
+     */
+    @Transactional
+    @Modifying
+    @Query("update ProvisioningTask t set t.startedAt = :startedAt, t.heartbeatAt = :startedAt, t.claimedBy = :nodeId"
+            + " where t.sequence = :sequence and t.startedAt is null")
+    int claim(@Param("sequence") Long sequence, @Param("nodeId") String nodeId, @Param("startedAt") Instant startedAt);
+
+    /**
+     * Renews the node's claim on the tasks it is running.
+     *
+     * @return the number of tasks whose claim was renewed
+     */
+    @Transactional
+    @Modifying
+    @Query("update ProvisioningTask t set t.heartbeatAt = :now where t.claimedBy = :nodeId and t.startedAt is not null")
+    int renewClaims(@Param("nodeId") String nodeId, @Param("now") Instant now);
+
+    /**
+     * Puts tasks back into the queue that the given node was running when it stopped, that no node has claimed
+     * by name, or whose node has not renewed its claim since the given time and may no longer exist.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ProvisioningTask t set t.startedAt = null, t.heartbeatAt = null, t.claimedBy = null where t.startedAt is not null"
+            + " and (t.claimedBy = :nodeId or t.claimedBy is null or t.heartbeatAt is null or t.heartbeatAt < :staleBefore)")
+    int requeueTasks(@Param("nodeId") String nodeId, @Param("staleBefore") Instant staleBefore);
+}
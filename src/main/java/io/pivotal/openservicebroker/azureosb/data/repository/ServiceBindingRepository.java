@@ -16,8 +16,37 @@
 
 package io.pivotal.openservicebroker.azureosb.data.repository;
 
+import io.pivotal.openservicebroker.azureosb.model.BindingSummary;
 import io.pivotal.openservicebroker.azureosb.model.ServiceBinding;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface ServiceBindingRepository extends JpaRepository<ServiceBinding, String> {
+
+    /**
+     * Finds a binding of the instance whose stored credentials are current, to serve a new binding from.
+     */
+    Optional<ServiceBinding> findFirstByInstanceIdAndCredentialsVersionAndEncryptedCredentialsIsNotNull(String instanceId,
+                                                                                                         Integer credentialsVersion);
+
+    /**
+     * Keyset pagination over the bindings matching the filters, each of which is ignored when {@code null}. Bindings
+     * whose instance no longer exists are included unless an instance filter excludes them.
+     */
+    @Query("select new io.pivotal.openservicebroker.azureosb.model.BindingSummary(b.bindingId, b.instanceId,"
+            + " b.credentialsVersion, i.planId, i.orgName, i.spaceName, i.resourceGroup)"
+            + " from ServiceBinding b left join ServiceInstance i on i.instanceId = b.instanceId where b.bindingId > :after"
+            + " and (:instanceId is null or b.instanceId = :instanceId)"
+            + " and (:orgName is null or i.orgName = :orgName) and (:spaceName is null or i.spaceName = :spaceName)"
+            + " and (:planId is null or i.planId = :planId) and (:resourceGroup is null or i.resourceGroup = :resourceGroup)"
+            + " order by b.bindingId asc")
+    List<BindingSummary> findSummaries(@Param("after") String after, @Param("instanceId") String instanceId,
+                                       @Param("orgName") String orgName, @Param("spaceName") String spaceName,
+                                       @Param("planId") String planId, @Param("resourceGroup") String resourceGroup,
+                                       Pageable pageable);
 }
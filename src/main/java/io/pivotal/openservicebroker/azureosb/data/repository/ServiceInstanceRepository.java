@@ -16,8 +16,33 @@
 
 package io.pivotal.openservicebroker.azureosb.data.repository;
 
+import io.pivotal.openservicebroker.azureosb.model.InstanceSummary;
 import io.pivotal.openservicebroker.azureosb.model.ServiceInstance;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface ServiceInstanceRepository extends JpaRepository<ServiceInstance, String> {
+
+    /**
+     * Keyset pagination: the next batch of instances after the given id, in id order.
+     */
+    List<ServiceInstance> findByInstanceIdGreaterThanOrderByInstanceIdAsc(String instanceId, Pageable pageable);
+
+    /**
+     * Keyset pagination over the instances matching the filters, each of which is ignored when {@code null}.
+     * Selects summaries only, so neither the parameters are read nor the instances are managed.
+     */
+    @Query("select new io.pivotal.openservicebroker.azureosb.model.InstanceSummary(i.instanceId, i.serviceDefinitionId,"
+            + " i.planId, i.orgName, i.spaceName, i.resourceGroup, i.azureResourceId, i.credentialsVersion, i.activeKey)"
+            + " from ServiceInstance i where i.instanceId > :after"
+            + " and (:orgName is null or i.orgName = :orgName) and (:spaceName is null or i.spaceName = :spaceName)"
+            + " and (:planId is null or i.planId = :planId) and (:resourceGroup is null or i.resourceGroup = :resourceGroup)"
+            + " order by i.instanceId asc")
+    List<InstanceSummary> findSummaries(@Param("after") String after, @Param("orgName") String orgName,
+                                        @Param("spaceName") String spaceName, @Param("planId") String planId,
+                                        @Param("resourceGroup") String resourceGroup, Pageable pageable);
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.IdempotencyRecordRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdempotencyConfiguration {
+
+    @Bean
+    public IdempotentRequests idempotentRequests(IdempotencyRecordRepository recordRepository, RepositoryExecutor repositoryExecutor,
+                                                 ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new IdempotentRequests(recordRepository, repositoryExecutor, objectMapper, meterRegistry);
+    }
+}
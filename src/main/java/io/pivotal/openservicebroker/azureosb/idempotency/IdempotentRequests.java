@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.IdempotencyRecordRepository;
+import io.pivotal.openservicebroker.azureosb.model.IdempotencyRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Tells retried OSB requests from new and conflicting ones by the hash of what they ask for.
+ * <p>
+ * Identical requests arriving while the first one is still running on this node share its result instead of running
+ * again. Once a request created an instance or binding, its hash is stored, so that a later request for the same id
+ * can be answered as a repeat if it matches and rejected as a conflict if it does not. Shared requests are counted as
+ * {@code broker.requests.deduplicated}, tagged with the {@code type} of request.
+ */
+public class IdempotentRequests {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotentRequests.class);
+
+    private final IdempotencyRecordRepository recordRepository;
+
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotentRequests(IdempotencyRecordRepository recordRepository, RepositoryExecutor repositoryExecutor,
+                              ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.recordRepository = recordRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.objectMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public static String instanceKey(String instanceId) {
+        return "instance:" + instanceId;
+    }
+
+    public static String bindingKey(String bindingId) {
+        return "binding:" + bindingId;
+    }
+
+    /**
+     * Hashes the parts of a request that must match for a repeat to be identical. Map entries are hashed in key order.
+     */
+    public String hash(Object... parts) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(Arrays.asList(parts)));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash request", e);
+        }
+    }
+
+    /**
+     * Runs the call, unless an identical request for the same key is running already, whose result is shared then.
+     * A running request keeps going when its caller gives up, so that the caller's retry can pick up its result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> deduplicate(String key, String requestHash, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            InFlight candidate = new InFlight(requestHash);
+            candidate.result = Mono.defer(call)
+                    .doFinally(signal -> inFlight.remove(key, candidate))
+                    .cache();
+            InFlight running = inFlight.putIfAbsent(key, candidate);
+            if (running == null) {
+                return (Mono<T>) candidate.result;
+            }
+            if (running.requestHash.equals(requestHash)) {
+                logger.info("Joining the running request for [{}]", key);
+                meterRegistry.counter("broker.requests.deduplicated", "type", key.substring(0, key.indexOf(':'))).increment();
+                return (Mono<T>) running.result;
+            }
+            return Mono.defer(call);
+        });
+    }
+
+    /**
+     * Completes empty if the stored request for the key matches the hash or none was stored, and fails with the
+     * conflict otherwise.
+     */
+    public Mono<Void> verify(String key, String requestHash, Supplier<? extends RuntimeException> conflict) {
+        return repositoryExecutor.call(() -> recordRepository.findById(key))
+                .flatMap(record -> !record.isPresent() || record.get().getRequestHash().equals(requestHash)
+                        ? Mono.<Void>empty()
+                        : Mono.<Void>error(conflict.get()));
+    }
+
+    public Mono<Void> remember(String key, String requestHash, String operationId) {
+        return repositoryExecutor.run(() -> recordRepository.save(new IdempotencyRecord(key, requestHash, operationId)));
+    }
+
+    public Mono<Void> forget(String key) {
+        return repositoryExecutor.run(() -> {
+            if (recordRepository.existsById(key)) {
+                recordRepository.deleteById(key);
+            }
+        });
+    }
+
+    private static final class InFlight {
+
+        private final String requestHash;
+
+        private volatile Mono<?> result;
+
+        private InFlight(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.inventory;
+
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceBindingRepository;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import io.pivotal.openservicebroker.azureosb.model.BindingSummary;
+import io.pivotal.openservicebroker.azureosb.model.InstanceSummary;
+import org.springframework.data.domain.PageRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Lists the service instances and bindings the broker manages, in id order.
+ * <p>
+ * Listings are read in keyset batches, each in its own short query on the persistence threads, and the next batch is
+ * only read once the consumer has taken the previous one. Neither a connection nor a persistence thread is held while
+ * the consumer is slow, and memory stays bounded by the batch size however large the listing.
+ */
+public class Inventory {
+
+    private final ServiceInstanceRepository instanceRepository;
+
+    private final ServiceBindingRepository bindingRepository;
+
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final InventoryProperties properties;
+
+    public Inventory(ServiceInstanceRepository instanceRepository, ServiceBindingRepository bindingRepository,
+                     RepositoryExecutor repositoryExecutor, InventoryProperties properties) {
+        this.instanceRepository = instanceRepository;
+        this.bindingRepository = bindingRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.properties = properties;
+    }
+
+    public Flux<InstanceSummary> instances(InventoryFilter filter) {
+        return batches(filter.getAfter(), after -> instanceRepository.findSummaries(after, filter.getOrgName(),
+                filter.getSpaceName(), filter.getPlanId(), filter.getResourceGroup(), PageRequest.of(0, properties.getBatchSize())),
+                InstanceSummary::getInstanceId);
+    }
+
+    public Flux<BindingSummary> bindings(InventoryFilter filter) {
+        return batches(filter.getAfter(), after -> bindingRepository.findSummaries(after, filter.getInstanceId(),
+                filter.getOrgName(), filter.getSpaceName(), filter.getPlanId(), filter.getResourceGroup(),
+                PageRequest.of(0, properties.getBatchSize())),
+                BindingSummary::getBindingId);
+    }
+
+    private <T> Flux<T> batches(String after, Function<String, List<T>> query, Function<T, String> idOf) {
+        Function<String, Mono<List<T>>> nextBatch = id -> repositoryExecutor.call(() -> query.apply(id));
+        return nextBatch.apply(after)
+                .expand(batch -> batch.size() < properties.getBatchSize()
+                        ? Mono.empty()
+                        : nextBatch.apply(idOf.apply(batch.get(batch.size() - 1))))
+                .flatMapIterable(batch -> batch, 1);
+    }
+}
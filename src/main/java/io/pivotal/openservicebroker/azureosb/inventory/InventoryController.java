@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.inventory;
+
+import io.pivotal.openservicebroker.azureosb.model.BindingSummary;
+import io.pivotal.openservicebroker.azureosb.model.InstanceSummary;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/**
+ * Streams the inventory as newline-delimited JSON ({@code application/stream+json}) at
+ * {@code /admin/inventory/instances} and {@code /admin/inventory/bindings}, one record per line.
+ * An export that broke off continues from the last id it received with {@code after}.
+ */
+@RestController
+public class InventoryController {
+
+    private final Inventory inventory;
+
+    public InventoryController(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    @GetMapping(path = "/admin/inventory/instances", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<InstanceSummary> instances(@RequestParam(required = false) String org,
+                                           @RequestParam(required = false) String space,
+                                           @RequestParam(required = false) String plan,
+                                           @RequestParam(required = false) String resourceGroup,
+                                           @RequestParam(required = false) String after) {
+        return inventory.instances(new InventoryFilter(org, space, plan, resourceGroup, null, after));
+    }
+
+    @GetMapping(path = "/admin/inventory/bindings", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<BindingSummary> bindings(@RequestParam(required = false) String org,
+                                         @RequestParam(required = false) String space,
+                                         @RequestParam(required = false) String plan,
+                                         @RequestParam(required = false) String resourceGroup,
+                                         @RequestParam(required = false) String instanceId,
+                                         @RequestParam(required = false) String after) {
+        return inventory.bindings(new InventoryFilter(org, space, plan, resourceGroup, instanceId, after));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.inventory;
+
+/**
+ * Restricts an inventory listing. Each criterion is ignored when {@code null}.
+ */
+public class InventoryFilter {
+
+    private final String orgName;
+
+    private final String spaceName;
+
+    private final String planId;
+
+    private final String resourceGroup;
+
+    private final String instanceId;
+
+    private final String after;
+
+    /**
+     * @param instanceId only applies to bindings
+     * @param after      the id after which to continue a listing that broke off
+     */
+    public InventoryFilter(String orgName, String spaceName, String planId, String resourceGroup, String instanceId,
+                           String after) {
+        this.orgName = orgName;
+        this.spaceName = spaceName;
+        this.planId = planId;
+        this.resourceGroup = resourceGroup;
+        this.instanceId = instanceId;
+        this.after = after != null ? after : "";
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public String getSpaceName() {
+        return spaceName;
+    }
+
+    public String getPlanId() {
+        return planId;
+    }
+
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+}
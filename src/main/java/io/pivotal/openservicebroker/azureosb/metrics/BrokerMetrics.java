@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Times the broker's reactive calls, from subscription to completion, into Micrometer timers tagged with the
+ * operation, its outcome and the exception that ended it. Timer counts double as request and error counters.
+ */
+public class BrokerMetrics {
+
+    public static final String OSB_REQUESTS = "broker.osb.requests";
+
+    public static final String AZURE_REQUESTS = "broker.azure.requests";
+
+    public static final String CLOUDFOUNDRY_REQUESTS = "broker.cloudfoundry.requests";
+
+    public static final String PROVISIONING_OPERATIONS = "broker.provisioning.operations";
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    public BrokerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    /**
+     * Times a call of the Open Service Broker API, as answered by the service instance and binding services.
+     */
+    public <T> Mono<T> timeOsbRequest(String operation, String planId, Mono<T> call) {
+        return time(OSB_REQUESTS, Tags.of("operation", operation, "plan", valueOrNone(planId)), call);
+    }
+
+    public <T> Mono<T> timeAzureRequest(String operation, String region, Mono<T> call) {
+        return time(AZURE_REQUESTS, Tags.of("operation", operation, "region", valueOrNone(region)), call);
+    }
+
+    public <T> Flux<T> timeAzureRequest(String operation, String region, Flux<T> call) {
+        return time(AZURE_REQUESTS, Tags.of("operation", operation, "region", valueOrNone(region)), call);
+    }
+
+    public <T> Mono<T> timeCloudFoundryRequest(String operation, Mono<T> call) {
+        return time(CLOUDFOUNDRY_REQUESTS, Tags.of("operation", operation), call);
+    }
+
+    /**
+     * Times a queued provisioning operation from the moment it starts running until Azure is done with it.
+     */
+    public <T> Mono<T> timeProvisioning(String type, Mono<T> call) {
+        return time(PROVISIONING_OPERATIONS, Tags.of("type", type), call);
+    }
+
+    private <T> Mono<T> time(String name, Tags tags, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                    .doOnSuccess(value -> stop(sample, name, tags, "success", null))
+                    .doOnError(throwable -> stop(sample, name, tags, "error", throwable))
+                    .doOnCancel(() -> stop(sample, name, tags, "cancelled", null));
+        });
+    }
+
+    private <T> Flux<T> time(String name, Tags tags, Flux<T> call) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                    .doOnComplete(() -> stop(sample, name, tags, "success", null))
+                    .doOnError(throwable -> stop(sample, name, tags, "error", throwable))
+                    .doOnCancel(() -> stop(sample, name, tags, "cancelled", null));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String name, Tags tags, String outcome, Throwable throwable) {
+        sample.stop(Timer.builder(name)
+                .tags(tags)
+                .tag("outcome", outcome)
+                .tag("exception", throwable == null ? NONE : throwable.getClass().getSimpleName())
+                .register(meterRegistry));
+    }
+
+    private static String valueOrNone(String value) {
+        return value == null || value.isEmpty() ? NONE : value;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.model;
+
+/**
+ * The pair of CosmosDB account keys handed out to bound applications. The other pair is on standby, so it can be
+ * regenerated without breaking applications that still use the active one.
+ */
+public enum AccountKey {
+
+    PRIMARY,
+
+    SECONDARY;
+
+    public AccountKey standby() {
+        return this == PRIMARY ? SECONDARY : PRIMARY;
+    }
+}
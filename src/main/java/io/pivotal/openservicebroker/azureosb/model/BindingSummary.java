@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.model;
+
+/**
+ * What the inventory shows of a service binding, along with the instance it belongs to: no parameters or credentials.
+ */
+public class BindingSummary {
+
+    private final String bindingId;
+
+    private final String instanceId;
+
+    private final Integer credentialsVersion;
+
+    private final String planId;
+
+    private final String orgName;
+
+    private final String spaceName;
+
+    private final String resourceGroup;
+
+    public BindingSummary(String bindingId, String instanceId, Integer credentialsVersion, String planId, String orgName,
+                          String spaceName, String resourceGroup) {
+        this.bindingId = bindingId;
+        this.instanceId = instanceId;
+        this.credentialsVersion = credentialsVersion;
+        this.planId = planId;
+        this.orgName = orgName;
+        this.spaceName = spaceName;
+        this.resourceGroup = resourceGroup;
+    }
+
+    public String getBindingId() {
+        return bindingId;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * The credentials version of the stored credentials, or {@code null} if none are stored.
+     */
+    public Integer getCredentialsVersion() {
+        return credentialsVersion;
+    }
+
+    /**
+     * {@code null}, like the other fields of the instance, if the instance no longer exists.
+     */
+    public String getPlanId() {
+        return planId;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public String getSpaceName() {
+        return spaceName;
+    }
+
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+}
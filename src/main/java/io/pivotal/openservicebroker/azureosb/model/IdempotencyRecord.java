@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * The hash of the request that created a service instance or binding, to tell a retried request from a conflicting one.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "request_key")
+    private String requestKey;
+
+    @Column(name = "request_hash")
+    private String requestHash;
+
+    @Column(name = "operation_id")
+    private String operationId;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    @SuppressWarnings("unused")
+    private IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String requestKey, String requestHash, String operationId) {
+        this.requestKey = requestKey;
+        this.requestHash = requestHash;
+        this.operationId = operationId;
+        this.createdAt = Instant.now();
+    }
+
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    /**
+     * The asynchronous operation the request started, if any.
+     */
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * A lease on a service instance id held by one broker node while it changes the instance. Leases expire, so a node
+ * that dies while holding one only blocks the instance until {@link #getLockedUntil()}.
+ */
+@Entity
+@Table(name = "instance_locks")
+public class InstanceLock {
+
+    @Id
+    @Column(name = "lock_key")
+    private String lockKey;
+
+    @Column(name = "locked_by")
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private Instant lockedUntil;
+
+    @SuppressWarnings("unused")
+    private InstanceLock() {
+    }
+
+    public String getLockKey() {
+        return lockKey;
+    }
+
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public Instant getLockedUntil() {
+        return lockedUntil;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.model;
+
+/**
+ * What the inventory shows of a service instance: everything but its parameters.
+ */
+public class InstanceSummary {
+
+    private final String instanceId;
+
+    private final String serviceDefinitionId;
+
+    private final String planId;
+
+    private final String orgName;
+
+    private final String spaceName;
+
+    private final String resourceGroup;
+
+    private final String azureResourceId;
+
+    private final int credentialsVersion;
+
+    private final AccountKey activeKey;
+
+    public InstanceSummary(String instanceId, String serviceDefinitionId, String planId, String orgName, String spaceName,
+                           String resourceGroup, String azureResourceId, int credentialsVersion, AccountKey activeKey) {
+        this.instanceId = instanceId;
+        this.serviceDefinitionId = serviceDefinitionId;
+        this.planId = planId;
+        this.orgName = orgName;
+        this.spaceName = spaceName;
+        this.resourceGroup = resourceGroup;
+        this.azureResourceId = azureResourceId;
+        this.credentialsVersion = credentialsVersion;
+        this.activeKey = activeKey != null ? activeKey : AccountKey.PRIMARY;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getServiceDefinitionId() {
+        return serviceDefinitionId;
+    }
+
+    public String getPlanId() {
+        return planId;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public String getSpaceName() {
+        return spaceName;
+    }
+
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+
+    public String getAzureResourceId() {
+        return azureResourceId;
+    }
+
+    public int getCredentialsVersion() {
+        return credentialsVersion;
+    }
+
+    public AccountKey getActiveKey() {
+        return activeKey;
+    }
+}
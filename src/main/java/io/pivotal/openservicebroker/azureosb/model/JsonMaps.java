@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the parameter and credential maps of the entities as JSON documents, keeping nested objects,
+ * lists and exact numbers intact.
+ */
+final class JsonMaps {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<LinkedHashMap<String, Object>>() {
+    };
+
+    private JsonMaps() {
+    }
+
+    static String write(Map<String, Object> map) {
+        if (map == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(map);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not serialize " + map.keySet() + " to JSON", e);
+        }
+    }
+
+    static Map<String, Object> read(String json) {
+        if (json == null) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, MAP_TYPE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not deserialize stored JSON", e);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2019 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,16 +16,9 @@
 
 package io.pivotal.openservicebroker.azureosb.model;
 
-import javax.persistence.AttributeConverter;
+public enum OperationType {
 
-public class ObjectToStringConverter implements AttributeConverter<Object, String> {
-	@Override
-	public String convertToDatabaseColumn(Object attribute) {
-		return attribute.toString();
-	}
+    CREATE,
 
-	@Override
-	public Object convertToEntityAttribute(String dbData) {
-		return dbData;
-	}
+    DELETE
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * A pending or running Azure provisioning operation. Rows are processed in {@link #getSequence() sequence} order and
+ * removed once the operation has finished, so the table only ever holds the backlog and what is in flight.
+ */
+@Entity
+@Table(name = "provisioning_tasks", indexes = @Index(name = "provisioning_tasks_instance_id", columnList = "instanceId"))
+public class ProvisioningTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long sequence;
+
+    @Column
+    private String instanceId;
+
+    @Column
+    private String operationId;
+
+    @Column
+    @Enumerated(EnumType.STRING)
+    private OperationType type;
+
+    @Column
+    private String resourceGroup;
+
+    @Column
+    private String azureResourceId;
+
+    /**
+     * The plan of the instance being created, which decides the provisioning profile of its account.
+     */
+    @Column
+    private String planId;
+
+    @Column
+    private Instant enqueuedAt;
+
+    @Column
+    private Instant startedAt;
+
+    /**
+     * The broker node running the task, so that a restarted node picks its own tasks up again.
+     */
+    @Column
+    private String claimedBy;
+
+    /**
+     * When the node running the task last renewed its claim.
+     */
+    @Column
+    private Instant heartbeatAt;
+
+    @SuppressWarnings("unused")
+    private ProvisioningTask() {
+    }
+
+    private ProvisioningTask(String instanceId, String operationId, OperationType type, String resourceGroup,
+                             String azureResourceId) {
+        this.instanceId = instanceId;
+        this.operationId = operationId;
+        this.type = type;
+        this.resourceGroup = resourceGroup;
+        this.azureResourceId = azureResourceId;
+        this.enqueuedAt = Instant.now();
+    }
+
+    public static ProvisioningTask create(String instanceId, String operationId, String resourceGroup, String planId) {
+        ProvisioningTask task = new ProvisioningTask(instanceId, operationId, OperationType.CREATE, resourceGroup, null);
+        task.planId = planId;
+        return task;
+    }
+
+    public static ProvisioningTask delete(String instanceId, String operationId, String resourceGroup, String azureResourceId) {
+        return new ProvisioningTask(instanceId, operationId, OperationType.DELETE, resourceGroup, azureResourceId);
+    }
+
+    public void start(String nodeId, Instant startedAt) {
+        this.claimedBy = nodeId;
+        this.startedAt = startedAt;
+        this.heartbeatAt = startedAt;
+    }
+
+    public boolean isStarted() {
+        return startedAt != null;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+
+    public String getAzureResourceId() {
+        return azureResourceId;
+    }
+
+    public String getPlanId() {
+        return planId;
+    }
+
+    public Instant getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public Instant getHeartbeatAt() {
+        return heartbeatAt;
+    }
+}
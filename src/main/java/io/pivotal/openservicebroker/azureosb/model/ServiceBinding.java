@@ -16,57 +16,104 @@
 
 package io.pivotal.openservicebroker.azureosb.model;
 
+import org.hibernate.annotations.Type;
+
 import javax.persistence.*;
 import java.util.Map;
 
 @Entity
-@Table(name = "service_bindings")
+@Table(name = "service_bindings", indexes = @Index(name = "service_bindings_instance_id", columnList = "instanceId"))
 public class ServiceBinding {
     @Id
     @Column
     private final String bindingId;
 
-    @ElementCollection
-    @MapKeyColumn(name = "parameter_name")
-    @Column(name = "parameter_value")
-    @CollectionTable(name = "service_binding_parameters", joinColumns = @JoinColumn(name = "binding_id"))
-    @Convert(converter = ObjectToStringConverter.class, attributeName = "value")
-    private final Map<String, Object> parameters;
+    @Column
+    private final String instanceId;
+
+    /**
+     * The binding parameters as a JSON document, only parsed when they are asked for.
+     */
+    @Type(type = "text")
+    @Column
+    private final String parameters;
+
+    @Transient
+    private Map<String, Object> parameterMap;
+
+    /**
+     * The credentials handed out with the binding, envelope-encrypted by the broker's credentials store, so that
+     * binds can be served without calling Azure. {@code null} if no master key was configured.
+     */
+    @Type(type = "text")
+    @Column
+    private final String encryptedCredentials;
 
     /**
-     * Currently not being used. We don't want to store plain text credentials in the database.
-     * If we would use CredHub, this would be okay though.
-     * For now, we call Azure every time we need the credentials.
+     * The instance's credentials version the stored credentials belong to.
      */
-    @ElementCollection
-    @MapKeyColumn(name = "credential_name")
-    @Column(name = "credential_value")
-    @CollectionTable(name = "service_binding_credentials", joinColumns = @JoinColumn(name = "binding_id"))
-    @Convert(converter = ObjectToStringConverter.class, attributeName = "value")
-    private final Map<String, Object> credentials;
+    @Column
+    private final Integer credentialsVersion;
+
+    @Version
+    private Long version;
 
     @SuppressWarnings("unused")
     private ServiceBinding() {
         this.bindingId = null;
+        this.instanceId = null;
         this.parameters = null;
-        this.credentials = null;
+        this.encryptedCredentials = null;
+        this.credentialsVersion = null;
     }
 
-    public ServiceBinding(String bindingId, Map<String, Object> parameters, Map<String, Object> credentials) {
+    public ServiceBinding(String bindingId, String instanceId, Map<String, Object> parameters, String encryptedCredentials,
+                          Integer credentialsVersion) {
         this.bindingId = bindingId;
-        this.parameters = parameters;
-        this.credentials = credentials;
+        this.instanceId = instanceId;
+        this.parameters = JsonMaps.write(parameters);
+        this.parameterMap = parameters;
+        this.encryptedCredentials = encryptedCredentials;
+        this.credentialsVersion = credentialsVersion;
+    }
+
+    private ServiceBinding(ServiceBinding source, String instanceId, String encryptedCredentials, Integer credentialsVersion) {
+        this.bindingId = source.bindingId;
+        this.instanceId = instanceId;
+        this.parameters = source.parameters;
+        this.encryptedCredentials = encryptedCredentials;
+        this.credentialsVersion = credentialsVersion;
+        this.version = source.version;
+    }
+
+    /**
+     * Bindings created by earlier broker versions did not record their instance; it is filled in along with the
+     * credentials.
+     */
+    public ServiceBinding withCredentials(String instanceId, String encryptedCredentials, Integer credentialsVersion) {
+        return new ServiceBinding(this, instanceId, encryptedCredentials, credentialsVersion);
     }
 
     public String getBindingId() {
         return bindingId;
     }
 
-    public Map<String, Object> getCredentials() {
-        return credentials;
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getEncryptedCredentials() {
+        return encryptedCredentials;
+    }
+
+    public Integer getCredentialsVersion() {
+        return credentialsVersion;
     }
 
     public Map<String, Object> getParameters() {
-        return parameters;
+        if (parameterMap == null) {
+            parameterMap = JsonMaps.read(parameters);
+        }
+        return parameterMap;
     }
 }
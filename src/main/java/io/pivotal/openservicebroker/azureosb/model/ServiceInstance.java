@@ -17,6 +17,8 @@
 package io.pivotal.openservicebroker.azureosb.model;
 
 
+import org.hibernate.annotations.Type;
+
 import javax.persistence.*;
 import java.util.Map;
 
@@ -40,12 +42,45 @@ public class ServiceInstance {
     @Column
     private final String orgName;
 
-    @ElementCollection
-    @MapKeyColumn(name = "parameter_name")
-    @Column(name = "parameter_value")
-    @CollectionTable(name = "service_instance_parameters", joinColumns = @JoinColumn(name = "instance_id"))
-    @Convert(converter = ObjectToStringConverter.class, attributeName = "value")
-    private final Map<String, Object> parameters;
+    @Column
+    private final String resourceGroup;
+
+    /**
+     * ARM resource id of the CosmosDB account, so it can be addressed without listing the subscription.
+     * Instances provisioned by earlier broker versions have none.
+     */
+    @Column
+    private final String azureResourceId;
+
+    /**
+     * The provisioning parameters as a JSON document, only parsed when they are asked for. Mapped as text rather
+     * than a LOB, which PostgreSQL would store as a large object instead of in the {@code TEXT} column.
+     */
+    @Type(type = "text")
+    @Column
+    private final String parameters;
+
+    @Transient
+    private Map<String, Object> parameterMap;
+
+    /**
+     * Incremented with every key rotation, so that broker nodes can tell cached credentials are outdated.
+     */
+    @Column
+    private final int credentialsVersion;
+
+    /**
+     * The key pair served to bound applications. Instances that were never rotated have none and use the primary keys.
+     */
+    @Column
+    @Enumerated(EnumType.STRING)
+    private final AccountKey activeKey;
+
+    /**
+     * Guards against broker nodes overwriting each other's changes to the same instance.
+     */
+    @Version
+    private Long version;
 
     @SuppressWarnings("unused")
     private ServiceInstance() {
@@ -54,17 +89,52 @@ public class ServiceInstance {
         planId = null;
         orgName = null;
         spaceName = null;
+        resourceGroup = null;
+        azureResourceId = null;
         parameters = null;
+        credentialsVersion = 0;
+        activeKey = null;
     }
 
     public ServiceInstance(String instanceId, String serviceDefinitionId, String planId, String orgName, String spaceName,
-                           Map<String, Object> parameters) {
+                           String resourceGroup, String azureResourceId, Map<String, Object> parameters) {
         this.instanceId = instanceId;
         this.serviceDefinitionId = serviceDefinitionId;
         this.planId = planId;
         this.orgName = orgName;
         this.spaceName = spaceName;
-        this.parameters = parameters;
+        this.resourceGroup = resourceGroup;
+        this.azureResourceId = azureResourceId;
+        this.parameters = JsonMaps.write(parameters);
+        this.parameterMap = parameters;
+        this.credentialsVersion = 0;
+        this.activeKey = AccountKey.PRIMARY;
+    }
+
+    private ServiceInstance(ServiceInstance source, String resourceGroup, String azureResourceId, int credentialsVersion,
+                            AccountKey activeKey) {
+        this.instanceId = source.instanceId;
+        this.serviceDefinitionId = source.serviceDefinitionId;
+        this.planId = source.planId;
+        this.orgName = source.orgName;
+        this.spaceName = source.spaceName;
+        this.resourceGroup = resourceGroup;
+        this.azureResourceId = azureResourceId;
+        this.parameters = source.parameters;
+        this.credentialsVersion = credentialsVersion;
+        this.activeKey = activeKey;
+        this.version = source.version;
+    }
+
+    public ServiceInstance withAzureResource(String resourceGroup, String azureResourceId) {
+        return new ServiceInstance(this, resourceGroup, azureResourceId, credentialsVersion, activeKey);
+    }
+
+    /**
+     * The instance after its standby keys have been regenerated and made the active ones.
+     */
+    public ServiceInstance withRotatedKeys() {
+        return new ServiceInstance(this, resourceGroup, azureResourceId, credentialsVersion + 1, getActiveKey().standby());
     }
 
     public String getInstanceId() {
@@ -87,7 +157,26 @@ public class ServiceInstance {
         return spaceName;
     }
 
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+
+    public String getAzureResourceId() {
+        return azureResourceId;
+    }
+
+    public int getCredentialsVersion() {
+        return credentialsVersion;
+    }
+
+    public AccountKey getActiveKey() {
+        return activeKey != null ? activeKey : AccountKey.PRIMARY;
+    }
+
     public Map<String, Object> getParameters() {
-        return parameters;
+        if (parameterMap == null) {
+            parameterMap = JsonMaps.read(parameters);
+        }
+        return parameterMap;
     }
 }
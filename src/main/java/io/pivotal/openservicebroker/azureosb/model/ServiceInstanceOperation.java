@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.model;
+
+import org.springframework.cloud.servicebroker.model.instance.OperationState;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * The most recent asynchronous operation on a service instance, keyed by instance id so that
+ * {@code last_operation} polls are answered with a single primary-key lookup.
+ */
+@Entity
+@Table(name = "service_instance_operations")
+public class ServiceInstanceOperation {
+
+    /**
+     * Width of the {@code description} column; longer descriptions, such as ARM error messages, are cut to fit.
+     */
+    public static final int MAX_DESCRIPTION_LENGTH = 255;
+
+    @Id
+    @Column
+    private String instanceId;
+
+    @Column
+    private String operationId;
+
+    @Column
+    @Enumerated(EnumType.STRING)
+    private OperationType type;
+
+    @Column
+    @Enumerated(EnumType.STRING)
+    private OperationState state;
+
+    @Column(length = MAX_DESCRIPTION_LENGTH)
+    private String description;
+
+    /**
+     * ARM resource id the operation acts on, once known.
+     */
+    @Column
+    private String azureResourceId;
+
+    @Column
+    private Instant startedAt;
+
+    @Column
+    private Instant updatedAt;
+
+    @SuppressWarnings("unused")
+    private ServiceInstanceOperation() {
+    }
+
+    public ServiceInstanceOperation(String instanceId, String operationId, OperationType type, String description,
+                                    String azureResourceId) {
+        this.instanceId = instanceId;
+        this.operationId = operationId;
+        this.type = type;
+        this.state = OperationState.IN_PROGRESS;
+        this.description = truncate(description);
+        this.azureResourceId = azureResourceId;
+        this.startedAt = Instant.now();
+        this.updatedAt = startedAt;
+    }
+
+    public void succeed(String description, String azureResourceId) {
+        transition(OperationState.SUCCEEDED, description);
+        if (azureResourceId != null) {
+            this.azureResourceId = azureResourceId;
+        }
+    }
+
+    public void fail(String description) {
+        transition(OperationState.FAILED, description);
+    }
+
+    private void transition(OperationState state, String description) {
+        this.state = state;
+        this.description = truncate(description);
+        this.updatedAt = Instant.now();
+    }
+
+    private static String truncate(String description) {
+        return description != null && description.length() > MAX_DESCRIPTION_LENGTH
+                ? description.substring(0, MAX_DESCRIPTION_LENGTH - 3) + "..."
+                : description;
+    }
+
+    public boolean isInProgress() {
+        return state == OperationState.IN_PROGRESS;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
+    public OperationState getState() {
+        return state;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getAzureResourceId() {
+        return azureResourceId;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.onboarding;
+
+import io.pivotal.openservicebroker.azureosb.catalog.BrokerCatalog;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstanceOperation;
+import io.pivotal.openservicebroker.azureosb.onboarding.OnboardingBatch.BindingSpec;
+import io.pivotal.openservicebroker.azureosb.onboarding.OnboardingBatch.InstanceSpec;
+import io.pivotal.openservicebroker.azureosb.onboarding.OnboardingResult.Status;
+import io.pivotal.openservicebroker.azureosb.service.OperationTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.model.CloudFoundryContext;
+import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+import org.springframework.cloud.servicebroker.model.catalog.Plan;
+import org.springframework.cloud.servicebroker.model.catalog.ServiceDefinition;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.instance.OperationState;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the instances and bindings of an {@link OnboardingBatch} through the same service instance and binding
+ * services as the OSB API, a bounded number at a time.
+ * <p>
+ * The whole batch is validated against the catalog before anything is created. Instances are started first; bindings
+ * of instances in the same batch wait until their instance has been provisioned. Each item yields an
+ * {@link OnboardingResult} as soon as it completes, failures included.
+ */
+public class BatchOnboarding {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchOnboarding.class);
+
+    private static final String RESOURCE_GROUP = "resourceGroupName";
+
+    private final ServiceInstanceService instanceService;
+
+    private final ServiceInstanceBindingService bindingService;
+
+    private final BrokerCatalog brokerCatalog;
+
+    private final OperationTracker operationTracker;
+
+    private final OnboardingProperties properties;
+
+    public BatchOnboarding(ServiceInstanceService instanceService, ServiceInstanceBindingService bindingService,
+                           BrokerCatalog brokerCatalog, OperationTracker operationTracker, OnboardingProperties properties) {
+        this.instanceService = instanceService;
+        this.bindingService = bindingService;
+        this.brokerCatalog = brokerCatalog;
+        this.operationTracker = operationTracker;
+        this.properties = properties;
+    }
+
+    /**
+     * Fails with {@link ServiceBrokerInvalidParametersException} before creating anything if the batch is invalid.
+     */
+    public Flux<OnboardingResult> onboard(OnboardingBatch batch) {
+        return brokerCatalog.getCatalog()
+                .map(catalog -> validate(batch, catalog))
+                .flatMapMany(service -> {
+                    logger.info("Onboarding {} Service Instances and {} Service Bindings", batch.getInstances().size(),
+                            batch.getBindings().size());
+                    Map<String, Mono<OnboardingResult>> instances = new HashMap<>();
+                    for (InstanceSpec instance : batch.getInstances()) {
+                        instances.put(instance.getInstanceId(), createInstance(service.getId(), instance).cache());
+                    }
+                    Map<String, InstanceSpec> specs = batch.getInstances().stream()
+                            .collect(Collectors.toMap(InstanceSpec::getInstanceId, instance -> instance));
+
+                    Flux<Mono<OnboardingResult>> items = Flux.concat(
+                            Flux.fromIterable(batch.getInstances()).map(instance -> instances.get(instance.getInstanceId())),
+                            Flux.fromIterable(batch.getBindings()).map(binding -> createBinding(service.getId(), binding,
+                                    specs.get(binding.getInstanceId()), instances.get(binding.getInstanceId()))));
+                    return items.flatMap(item -> item, properties.getConcurrency());
+                });
+    }
+
+    private ServiceDefinition validate(OnboardingBatch batch, Catalog catalog) {
+        List<String> errors = new ArrayList<>();
+        ServiceDefinition service = findService(batch.getServiceDefinitionId(), catalog);
+        if (service == null) {
+            throw new ServiceBrokerInvalidParametersException("Unknown service " + batch.getServiceDefinitionId());
+        }
+        int items = batch.getInstances().size() + batch.getBindings().size();
+        if (items > properties.getMaxItems()) {
+            throw new ServiceBrokerInvalidParametersException("A batch holds at most " + properties.getMaxItems() + " items, not " + items);
+        }
+
+        Set<String> planIds = service.getPlans().stream().map(Plan::getId).collect(Collectors.toSet());
+        Map<String, InstanceSpec> instances = new HashMap<>();
+        for (InstanceSpec instance : batch.getInstances()) {
+            String instanceId = instance.getInstanceId();
+            if (isBlank(instanceId)) {
+                errors.add("An instance has no instanceId");
+                continue;
+            }
+            if (instances.put(instanceId, instance) != null) {
+                errors.add("Instance " + instanceId + " is listed more than once");
+            }
+            if (!planIds.contains(instance.getPlanId())) {
+                errors.add("Instance " + instanceId + " has unknown plan " + instance.getPlanId());
+            }
+            if (isBlank(instance.getOrganizationGuid()) || isBlank(instance.getSpaceGuid())) {
+                errors.add("Instance " + instanceId + " needs an organizationGuid and a spaceGuid");
+            }
+            if (resourceGroup(instance.getParameters()) == null) {
+                errors.add("Instance " + instanceId + " has no " + RESOURCE_GROUP + " parameter");
+            }
+        }
+
+        Set<String> bindingIds = new HashSet<>();
+        for (BindingSpec binding : batch.getBindings()) {
+            String bindingId = binding.getBindingId();
+            if (isBlank(bindingId) || isBlank(binding.getInstanceId())) {
+                errors.add("A binding has no bindingId or instanceId");
+                continue;
+            }
+            if (!bindingIds.add(bindingId)) {
+                errors.add("Binding " + bindingId + " is listed more than once");
+            }
+            InstanceSpec instance = instances.get(binding.getInstanceId());
+            if (resourceGroup(binding.getParameters()) == null && (instance == null || resourceGroup(instance.getParameters()) == null)) {
+                errors.add("Binding " + bindingId + " has no " + RESOURCE_GROUP + " parameter");
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw new ServiceBrokerInvalidParametersException(String.join("; ", errors));
+        }
+        return service;
+    }
+
+    private static ServiceDefinition findService(String serviceDefinitionId, Catalog catalog) {
+        List<ServiceDefinition> services = catalog.getServiceDefinitions();
+        if (serviceDefinitionId == null) {
+            return services.size() == 1 ? services.get(0) : null;
+        }
+        return services.stream()
+                .filter(service -> service.getId().equals(serviceDefinitionId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Mono<OnboardingResult> createInstance(String serviceDefinitionId, InstanceSpec instance) {
+        String instanceId = instance.getInstanceId();
+        CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+                .serviceInstanceId(instanceId)
+                .serviceDefinitionId(serviceDefinitionId)
+                .planId(instance.getPlanId())
+                .parameters(instance.getParameters())
+                .context(CloudFoundryContext.builder()
+                        .organizationGuid(instance.getOrganizationGuid())
+                        .spaceGuid(instance.getSpaceGuid())
+                        .build())
+                .build();
+
+        return Mono.defer(() -> instanceService.createServiceInstance(request))
+                .map(response -> OnboardingResult.instance(instanceId,
+                        response.isInstanceExisted() ? Status.EXISTED : Status.ACCEPTED, response.getOperation()))
+                .onErrorResume(throwable -> failed(instanceId, null, throwable));
+    }
+
+    /**
+     * @param instance the instance of the same batch the binding is for, or {@code null}
+     */
+    private Mono<OnboardingResult> createBinding(String serviceDefinitionId, BindingSpec binding, InstanceSpec instance,
+                                                 Mono<OnboardingResult> instanceResult) {
+        String instanceId = binding.getInstanceId();
+        String bindingId = binding.getBindingId();
+        Map<String, Object> parameters = binding.getParameters() != null ? new HashMap<>(binding.getParameters()) : new HashMap<>();
+        if (resourceGroup(parameters) == null) {
+            parameters.put(RESOURCE_GROUP, resourceGroup(instance.getParameters()));
+        }
+        CreateServiceInstanceBindingRequest request = CreateServiceInstanceBindingRequest.builder()
+                .bindingId(bindingId)
+                .serviceInstanceId(instanceId)
+                .serviceDefinitionId(serviceDefinitionId)
+                .planId(instance != null ? instance.getPlanId() : null)
+                .parameters(parameters)
+                .build();
+
+        Mono<Void> ready = instanceResult == null ? Mono.empty() : instanceResult
+                .flatMap(result -> result.getStatus() == Status.FAILED
+                        ? Mono.error(new ServiceBrokerException("Service Instance " + instanceId + " could not be created"))
+                        : awaitProvisioned(instanceId))
+                .then();
+
+        return ready.then(Mono.defer(() -> bindingService.createServiceInstanceBinding(request)))
+                .map(response -> OnboardingResult.binding(instanceId, bindingId,
+                        response.isBindingExisted() ? Status.EXISTED : Status.CREATED))
+                .onErrorResume(throwable -> failed(instanceId, bindingId, throwable));
+    }
+
+    private Mono<ServiceInstanceOperation> awaitProvisioned(String instanceId) {
+        return Mono.defer(() -> operationTracker.find(instanceId))
+                .filter(operation -> !operation.isInProgress())
+                .repeatWhenEmpty(polls -> polls.delayElements(properties.getProvisioningPollInterval()))
+                .timeout(properties.getProvisioningTimeout())
+                .flatMap(operation -> operation.getState() == OperationState.FAILED
+                        ? Mono.error(new ServiceBrokerException("Service Instance " + instanceId + " failed to provision: "
+                                + operation.getDescription()))
+                        : Mono.just(operation));
+    }
+
+    private static Mono<OnboardingResult> failed(String instanceId, String bindingId, Throwable throwable) {
+        logger.warn("Could not onboard Service Instance [{}] Binding [{}]", instanceId, bindingId, throwable);
+        return Mono.just(OnboardingResult.failed(instanceId, bindingId, String.valueOf(throwable.getMessage())));
+    }
+
+    private static String resourceGroup(Map<String, Object> parameters) {
+        Object resourceGroup = parameters != null ? parameters.get(RESOURCE_GROUP) : null;
+        return resourceGroup instanceof String && !((String) resourceGroup).isEmpty() ? (String) resourceGroup : null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
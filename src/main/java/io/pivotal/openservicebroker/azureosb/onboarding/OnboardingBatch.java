@@ -0,0 +1,153 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.onboarding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service instances and bindings to create in one go. Bindings may refer to instances of the same batch.
+ */
+public class OnboardingBatch {
+
+    /**
+     * The service the instances are created for, or the only one in the catalog.
+     */
+    private String serviceDefinitionId;
+
+    private List<InstanceSpec> instances = new ArrayList<>();
+
+    private List<BindingSpec> bindings = new ArrayList<>();
+
+    public String getServiceDefinitionId() {
+        return serviceDefinitionId;
+    }
+
+    public void setServiceDefinitionId(String serviceDefinitionId) {
+        this.serviceDefinitionId = serviceDefinitionId;
+    }
+
+    public List<InstanceSpec> getInstances() {
+        return instances;
+    }
+
+    public void setInstances(List<InstanceSpec> instances) {
+        this.instances = instances;
+    }
+
+    public List<BindingSpec> getBindings() {
+        return bindings;
+    }
+
+    public void setBindings(List<BindingSpec> bindings) {
+        this.bindings = bindings;
+    }
+
+    public static class InstanceSpec {
+
+        private String instanceId;
+
+        private String planId;
+
+        private String organizationGuid;
+
+        private String spaceGuid;
+
+        /**
+         * Provisioning parameters, {@code resourceGroupName} included.
+         */
+        private Map<String, Object> parameters = new HashMap<>();
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        public void setInstanceId(String instanceId) {
+            this.instanceId = instanceId;
+        }
+
+        public String getPlanId() {
+            return planId;
+        }
+
+        public void setPlanId(String planId) {
+            this.planId = planId;
+        }
+
+        public String getOrganizationGuid() {
+            return organizationGuid;
+        }
+
+        public void setOrganizationGuid(String organizationGuid) {
+            this.organizationGuid = organizationGuid;
+        }
+
+        public String getSpaceGuid() {
+            return spaceGuid;
+        }
+
+        public void setSpaceGuid(String spaceGuid) {
+            this.spaceGuid = spaceGuid;
+        }
+
+        public Map<String, Object> getParameters() {
+            return parameters;
+        }
+
+        public void setParameters(Map<String, Object> parameters) {
+            this.parameters = parameters;
+        }
+    }
+
+    public static class BindingSpec {
+
+        private String bindingId;
+
+        private String instanceId;
+
+        /**
+         * Binding parameters. Without a {@code resourceGroupName}, the one of the instance in the same batch is used.
+         */
+        private Map<String, Object> parameters = new HashMap<>();
+
+        public String getBindingId() {
+            return bindingId;
+        }
+
+        public void setBindingId(String bindingId) {
+            this.bindingId = bindingId;
+        }
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        public void setInstanceId(String instanceId) {
+            this.instanceId = instanceId;
+        }
+
+        public Map<String, Object> getParameters() {
+            return parameters;
+        }
+
+        public void setParameters(Map<String, Object> parameters) {
+            this.parameters = parameters;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.onboarding;
+
+import io.pivotal.openservicebroker.azureosb.catalog.BrokerCatalog;
+import io.pivotal.openservicebroker.azureosb.service.OperationTracker;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(OnboardingProperties.class)
+public class OnboardingConfiguration {
+
+    @Bean
+    public BatchOnboarding batchOnboarding(ServiceInstanceService instanceService, ServiceInstanceBindingService bindingService,
+                                           BrokerCatalog brokerCatalog, OperationTracker operationTracker,
+                                           OnboardingProperties properties) {
+        return new BatchOnboarding(instanceService, bindingService, brokerCatalog, operationTracker, properties);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.onboarding;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.model.error.ErrorMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/**
+ * Accepts an {@link OnboardingBatch} at {@code /admin/onboarding} and streams one {@link OnboardingResult} per item
+ * as it completes, as newline-delimited JSON ({@code application/stream+json}) or as server-sent events.
+ * An invalid batch is rejected with {@code 400 Bad Request} before anything is created.
+ */
+@RestController
+public class OnboardingController {
+
+    private final BatchOnboarding batchOnboarding;
+
+    public OnboardingController(BatchOnboarding batchOnboarding) {
+        this.batchOnboarding = batchOnboarding;
+    }
+
+    @PostMapping(path = "/admin/onboarding", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {MediaType.APPLICATION_STREAM_JSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<OnboardingResult> onboard(@RequestBody OnboardingBatch batch) {
+        return batchOnboarding.onboard(batch);
+    }
+
+    @ExceptionHandler(ServiceBrokerInvalidParametersException.class)
+    public ResponseEntity<ErrorMessage> handleInvalidBatch(ServiceBrokerInvalidParametersException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ErrorMessage(exception.getMessage()));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.onboarding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "broker.onboarding")
+public class OnboardingProperties {
+
+    /**
+     * Items of a batch that are executed at the same time.
+     */
+    private int concurrency = 8;
+
+    /**
+     * Instances and bindings accepted in a single batch.
+     */
+    private int maxItems = 500;
+
+    /**
+     * How often a binding checks whether the instance it waits for has been provisioned.
+     */
+    private Duration provisioningPollInterval = Duration.ofSeconds(10);
+
+    /**
+     * How long a binding waits for its instance to be provisioned.
+     */
+    private Duration provisioningTimeout = Duration.ofMinutes(30);
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    public Duration getProvisioningPollInterval() {
+        return provisioningPollInterval;
+    }
+
+    public void setProvisioningPollInterval(Duration provisioningPollInterval) {
+        this.provisioningPollInterval = provisioningPollInterval;
+    }
+
+    public Duration getProvisioningTimeout() {
+        return provisioningTimeout;
+    }
+
+    public void setProvisioningTimeout(Duration provisioningTimeout) {
+        this.provisioningTimeout = provisioningTimeout;
+    }
+}
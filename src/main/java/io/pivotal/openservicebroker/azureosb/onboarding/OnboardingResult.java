@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.onboarding;
+
+/**
+ * The outcome of one instance or binding of an {@link OnboardingBatch}.
+ */
+public class OnboardingResult {
+
+    public enum Status {
+        ACCEPTED, CREATED, EXISTED, FAILED
+    }
+
+    private final String instanceId;
+
+    private final String bindingId;
+
+    private final Status status;
+
+    private final String operation;
+
+    private final String message;
+
+    private OnboardingResult(String instanceId, String bindingId, Status status, String operation, String message) {
+        this.instanceId = instanceId;
+        this.bindingId = bindingId;
+        this.status = status;
+        this.operation = operation;
+        this.message = message;
+    }
+
+    static OnboardingResult instance(String instanceId, Status status, String operation) {
+        return new OnboardingResult(instanceId, null, status, operation, null);
+    }
+
+    static OnboardingResult binding(String instanceId, String bindingId, Status status) {
+        return new OnboardingResult(instanceId, bindingId, status, null, null);
+    }
+
+    static OnboardingResult failed(String instanceId, String bindingId, String message) {
+        return new OnboardingResult(instanceId, bindingId, Status.FAILED, null, message);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * {@code null} for the result of an instance.
+     */
+    public String getBindingId() {
+        return bindingId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * The provisioning operation of an accepted instance.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
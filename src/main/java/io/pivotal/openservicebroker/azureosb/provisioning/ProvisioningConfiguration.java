@@ -0,0 +1,43 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.provisioning;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.openservicebroker.azureosb.data.InstanceLocks;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.ProvisioningTaskRepository;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ProvisioningProperties.class)
+public class ProvisioningConfiguration {
+
+    @Bean
+    public ProvisioningQueue provisioningQueue(ProvisioningTaskRepository taskRepository, RepositoryExecutor repositoryExecutor,
+                                               ProvisioningTaskExecutor taskExecutor, InstanceLocks instanceLocks,
+                                               ProvisioningProperties properties, MeterRegistry meterRegistry) {
+        ProvisioningQueue provisioningQueue = new ProvisioningQueue(taskRepository, repositoryExecutor, taskExecutor,
+                instanceLocks, properties);
+        Gauge.builder("broker.provisioning.in.flight", provisioningQueue, ProvisioningQueue::getInFlight)
+                .description("Provisioning operations currently running against Azure")
+                .register(meterRegistry);
+        return provisioningQueue;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.provisioning;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "broker.provisioning")
+public class ProvisioningProperties {
+
+    /**
+     * Azure create and delete operations allowed to run at the same time, across all broker nodes sharing the database.
+     * Further requests wait in the queue.
+     */
+    private int maxInFlight = 10;
+
+    /**
+     * How often the queue is checked for work in addition to checks triggered by enqueues and completions.
+     */
+    private Duration pollInterval = Duration.ofSeconds(10);
+
+    /**
+     * Identifies this broker node on the tasks it runs. Must be unique among the nodes sharing the database and stable
+     * across restarts, like the Cloud Foundry instance index.
+     */
+    private String nodeId = "0";
+
+    /**
+     * Tasks whose node has not renewed its claim for this long are assumed to belong to a node that is gone and are
+     * queued again. Nodes renew their claims every poll interval, so this must be a few of them.
+     */
+    private Duration staleAfter = Duration.ofMinutes(2);
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Duration getStaleAfter() {
+        return staleAfter;
+    }
+
+    public void setStaleAfter(Duration staleAfter) {
+        this.staleAfter = staleAfter;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.provisioning;
+
+import io.pivotal.openservicebroker.azureosb.data.InstanceLocks;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.ProvisioningTaskRepository;
+import io.pivotal.openservicebroker.azureosb.model.OperationType;
+import io.pivotal.openservicebroker.azureosb.model.ProvisioningTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Database-backed FIFO queue of Azure provisioning operations with a bound on how many run at once.
+ * <p>
+ * Requests are accepted as soon as their task is stored, which keeps bursts of marketplace requests from hitting ARM
+ * all at once and tripping subscription throttling. Tasks survive restarts: anything that was running when the broker
+ * stopped is queued again on startup, relying on ARM create and delete being idempotent.
+ * <p>
+ * Several broker nodes can share the queue: each claims tasks with a conditional update so that only one of them runs
+ * a task, and the bound on in-flight operations applies to all nodes together, which is what ARM throttles on. Nodes
+ * count the running tasks and claim new ones under a broker-wide lock; a node that keeps finding the lock held leaves
+ * the claiming to the holder and looks again on its next poll. Nodes renew the claims on their running tasks on
+ * every poll, so a long ARM operation keeps its claim; only tasks whose claim lapsed because their node disappeared
+ * are queued again.
+ */
+public class ProvisioningQueue implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProvisioningQueue.class);
+
+    private static final String LOCK_KEY = "broker:provisioning-queue";
+
+    private static final int LOCK_ATTEMPTS = 10;
+
+    private static final Duration LOCK_RETRY_INTERVAL = Duration.ofMillis(100);
+
+    private final ProvisioningTaskRepository taskRepository;
+
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final ProvisioningTaskExecutor taskExecutor;
+
+    private final InstanceLocks instanceLocks;
+
+    private final ProvisioningProperties properties;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private Disposable poller;
+
+    public ProvisioningQueue(ProvisioningTaskRepository taskRepository, RepositoryExecutor repositoryExecutor,
+                             ProvisioningTaskExecutor taskExecutor, InstanceLocks instanceLocks, ProvisioningProperties properties) {
+        this.taskRepository = taskRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.taskExecutor = taskExecutor;
+        this.instanceLocks = instanceLocks;
+        this.properties = properties;
+    }
+
+    public Mono<ProvisioningTask> enqueue(ProvisioningTask task) {
+        return repositoryExecutor.call(() -> taskRepository.save(task))
+                .doOnNext(saved -> dispatch());
+    }
+
+    /**
+     * @return the 1-based position of the instance's waiting task, or empty if it has none
+     */
+    public Mono<Long> position(String instanceId) {
+        return repositoryExecutor.call(() -> taskRepository.findFirstByInstanceIdAndStartedAtIsNull(instanceId)
+                .map(task -> taskRepository.countByStartedAtIsNullAndSequenceLessThan(task.getSequence()) + 1)
+                .orElse(null));
+    }
+
+    /**
+     * Removes the instance's task of the given type if it has not started yet.
+     *
+     * @return whether a waiting task was removed
+     */
+    public Mono<Boolean> cancel(String instanceId, OperationType type) {
+        return repositoryExecutor.call(() -> taskRepository.findFirstByInstanceIdAndStartedAtIsNull(instanceId)
+                .filter(task -> task.getType() == type)
+                .map(task -> taskRepository.deleteWaiting(task.getSequence()) == 1)
+                .orElse(false));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        requeue(properties.getNodeId()).subscribe(requeued -> {
+            if (requeued > 0) {
+                logger.info("Re-queued {} provisioning tasks that were running before the restart", requeued);
+            }
+            dispatch();
+        }, throwable -> logger.error("Could not re-queue provisioning tasks", throwable));
+
+        poller = Flux.interval(properties.getPollInterval())
+                .concatMap(tick -> renewClaims()
+                        .onErrorResume(throwable -> {
+                            logger.error("Could not renew the claims on running provisioning tasks", throwable);
+                            return Mono.just(0);
+                        })
+                        .then(requeue(null))
+                        .doOnNext(requeued -> {
+                            if (requeued > 0) {
+                                logger.warn("Re-queued {} stale provisioning tasks", requeued);
+                            }
+                        })
+                        .onErrorResume(throwable -> {
+                            logger.error("Could not re-queue stale provisioning tasks", throwable);
+                            return Mono.just(0);
+                        }))
+                .subscribe(requeued -> dispatch());
+    }
+
+    private Mono<Integer> renewClaims() {
+        return inFlight.get() > 0
+                ? repositoryExecutor.call(() -> taskRepository.renewClaims(properties.getNodeId(), Instant.now()))
+                : Mono.just(0);
+    }
+
+    /**
+     * Queues the node's own tasks and every stale task again. Without a node id, only stale tasks are queued again.
+     */
+    private Mono<Integer> requeue(String nodeId) {
+        Instant staleBefore = Instant.now().minus(properties.getStaleAfter());
+        return repositoryExecutor.call(() -> taskRepository.requeueTasks(nodeId == null ? "" : nodeId, staleBefore));
+    }
+
+    void dispatch() {
+        instanceLocks.tryWithLock(LOCK_KEY, properties.getPollInterval(), repositoryExecutor.call(this::claimTasks))
+                .repeatWhenEmpty(attempts -> attempts.take(LOCK_ATTEMPTS - 1).delayElements(LOCK_RETRY_INTERVAL))
+                .flatMapIterable(tasks -> tasks)
+                .subscribe(this::execute, throwable -> logger.error("Could not dispatch provisioning tasks", throwable));
+    }
+
+    private synchronized List<ProvisioningTask> claimTasks() {
+        long free = properties.getMaxInFlight() - taskRepository.countByStartedAtIsNotNull();
+        if (free <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<ProvisioningTask> claimed = new ArrayList<>();
+        for (ProvisioningTask task : taskRepository.findByStartedAtIsNullOrderBySequenceAsc(PageRequest.of(0, (int) free))) {
+            Instant startedAt = Instant.now();
+            if (taskRepository.claim(task.getSequence(), properties.getNodeId(), startedAt) == 1) {
+                task.start(properties.getNodeId(), startedAt);
+                claimed.add(task);
+            }
+        }
+        inFlight.addAndGet(claimed.size());
+        return claimed;
+    }
+
+    private void execute(ProvisioningTask task) {
+        logger.info("Starting {} of Service Instance [{}]", task.getType(), task.getInstanceId());
+
+        taskExecutor.execute(task)
+                .onErrorResume(throwable -> {
+                    logger.error("Provisioning task {} of Service Instance [{}] failed", task.getSequence(), task.getInstanceId(), throwable);
+                    return Mono.empty();
+                })
+                .then(repositoryExecutor.run(() -> taskRepository.deleteById(task.getSequence())))
+                .doFinally(signal -> {
+                    inFlight.decrementAndGet();
+                    dispatch();
+                })
+                .subscribe(null, throwable -> logger.error("Could not remove provisioning task {}", task.getSequence(), throwable));
+    }
+
+    @Override
+    public void destroy() {
+        if (poller != null) {
+            poller.dispose();
+        }
+    }
+}
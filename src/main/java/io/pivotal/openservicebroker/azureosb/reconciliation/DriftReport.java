@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.reconciliation;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What one reconciliation run found and did. Keeps the first {@value #MAX_DRIFTS} drifts in detail and counts the rest.
+ */
+public class DriftReport {
+
+    static final int MAX_DRIFTS = 1000;
+
+    public enum Kind {
+        /**
+         * A broker-managed account without a service instance, for example because deprovisioning removed the instance
+         * but not the account.
+         */
+        ORPHANED_ACCOUNT,
+
+        /**
+         * A service instance pointing at an account that does not exist anymore, for example after a failed delete.
+         */
+        MISSING_ACCOUNT,
+
+        /**
+         * A service instance whose account exists but was never recorded, because the broker stopped between creating
+         * the account and storing its id.
+         */
+        UNLINKED_ACCOUNT
+    }
+
+    private final Instant startedAt = Instant.now();
+
+    private Instant finishedAt;
+
+    private long instancesChecked;
+
+    private long accountsChecked;
+
+    private long driftCount;
+
+    private long repairedCount;
+
+    private final List<Drift> drifts = new ArrayList<>();
+
+    synchronized void instanceChecked() {
+        instancesChecked++;
+    }
+
+    synchronized void accountsChecked(long count) {
+        accountsChecked = count;
+    }
+
+    synchronized void add(Drift drift) {
+        driftCount++;
+        if (drift.isRepaired()) {
+            repairedCount++;
+        }
+        if (drifts.size() < MAX_DRIFTS) {
+            drifts.add(drift);
+        }
+    }
+
+    synchronized DriftReport finish() {
+        finishedAt = Instant.now();
+        return this;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public synchronized Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public synchronized long getInstancesChecked() {
+        return instancesChecked;
+    }
+
+    public synchronized long getAccountsChecked() {
+        return accountsChecked;
+    }
+
+    public synchronized long getDriftCount() {
+        return driftCount;
+    }
+
+    public synchronized long getRepairedCount() {
+        return repairedCount;
+    }
+
+    public synchronized List<Drift> getDrifts() {
+        return Collections.unmodifiableList(new ArrayList<>(drifts));
+    }
+
+    public static class Drift {
+
+        private final Kind kind;
+
+        private final String instanceId;
+
+        private final String azureResourceId;
+
+        private final boolean repaired;
+
+        Drift(Kind kind, String instanceId, String azureResourceId, boolean repaired) {
+            this.kind = kind;
+            this.instanceId = instanceId;
+            this.azureResourceId = azureResourceId;
+            this.repaired = repaired;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        public String getAzureResourceId() {
+            return azureResourceId;
+        }
+
+        public boolean isRepaired() {
+            return repaired;
+        }
+    }
+}
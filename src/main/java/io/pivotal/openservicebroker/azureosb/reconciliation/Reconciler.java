@@ -0,0 +1,313 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.reconciliation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountResource;
+import io.pivotal.openservicebroker.azureosb.data.InstanceLocks;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import io.pivotal.openservicebroker.azureosb.model.OperationType;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstance;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstanceOperation;
+import io.pivotal.openservicebroker.azureosb.reconciliation.DriftReport.Drift;
+import io.pivotal.openservicebroker.azureosb.reconciliation.DriftReport.Kind;
+import io.pivotal.openservicebroker.azureosb.service.OperationTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Finds and repairs drift between the service instances in the broker database and the CosmosDB accounts in Azure.
+ * <p>
+ * A run lists the subscription's accounts once, then walks the instances in keyset-paginated batches and compares
+ * each against the listing, so memory stays bounded by the number of accounts rather than the size of the database.
+ * Instances with an operation in progress are left to the provisioning queue. Batches and repairs are paced, and
+ * only one broker node runs at a time.
+ */
+public class Reconciler implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(Reconciler.class);
+
+    private static final String LOCK_KEY = "broker:reconciliation";
+
+    private final CosmosDBAccountClient cosmosDBAccountClient;
+
+    private final ServiceInstanceRepository instanceRepository;
+
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final OperationTracker operationTracker;
+
+    private final InstanceLocks instanceLocks;
+
+    private final ReconciliationProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private volatile DriftReport lastReport;
+
+    private Disposable schedule;
+
+    public Reconciler(CosmosDBAccountClient cosmosDBAccountClient, ServiceInstanceRepository instanceRepository,
+                      RepositoryExecutor repositoryExecutor, OperationTracker operationTracker, InstanceLocks instanceLocks,
+                      ReconciliationProperties properties, MeterRegistry meterRegistry) {
+        this.cosmosDBAccountClient = cosmosDBAccountClient;
+        this.instanceRepository = instanceRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.operationTracker = operationTracker;
+        this.instanceLocks = instanceLocks;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        schedule = Mono.delay(jittered(properties.getInitialDelay()))
+                .thenMany(Mono.defer(this::runExclusively)
+                        .then(Mono.defer(() -> Mono.delay(jittered(properties.getInterval()))))
+                        .repeat())
+                .subscribe();
+    }
+
+    /**
+     * @return the report of the last run on this node, or {@code null} if it has not run yet
+     */
+    public DriftReport getLastReport() {
+        return lastReport;
+    }
+
+    private Mono<Void> runExclusively() {
+        return instanceLocks.tryWithLock(LOCK_KEY, properties.getInterval(), reconcile())
+                .doOnNext(report -> {
+                    lastReport = report;
+                    logger.info("Reconciled {} service instances against {} CosmosDB accounts: {} drifts, {} repaired",
+                            report.getInstancesChecked(), report.getAccountsChecked(), report.getDriftCount(), report.getRepairedCount());
+                })
+                .onErrorResume(throwable -> {
+                    logger.error("Reconciliation with Azure failed", throwable);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    Mono<DriftReport> reconcile() {
+        return Mono.defer(() -> {
+            DriftReport report = new DriftReport();
+
+            return cosmosDBAccountClient.listAccounts().collectList()
+                    .flatMap(accounts -> {
+                        report.accountsChecked(accounts.size());
+                        Listing listing = new Listing(accounts);
+
+                        return batches()
+                                .concatMap(batch -> Flux.fromIterable(batch)
+                                        .concatMap(instance -> check(instance, listing, report)))
+                                .thenMany(Flux.fromIterable(listing.unmatchedManagedAccounts())
+                                        .concatMap(account -> orphaned(account, report)))
+                                .then(Mono.fromCallable(report::finish));
+                    });
+        });
+    }
+
+    private Flux<List<ServiceInstance>> batches() {
+        return nextBatch("")
+                .expand(batch -> batch.size() < properties.getBatchSize()
+                        ? Mono.empty()
+                        : nextBatch(batch.get(batch.size() - 1).getInstanceId()).delaySubscription(properties.getBatchPause()));
+    }
+
+    private Mono<List<ServiceInstance>> nextBatch(String afterInstanceId) {
+        return repositoryExecutor.call(() -> instanceRepository.findByInstanceIdGreaterThanOrderByInstanceIdAsc(afterInstanceId,
+                PageRequest.of(0, properties.getBatchSize())))
+                .filter(batch -> !batch.isEmpty());
+    }
+
+    private Mono<Void> check(ServiceInstance instance, Listing listing, DriftReport report) {
+        report.instanceChecked();
+        CosmosDBAccountResource account = listing.match(instance);
+
+        if (instance.getAzureResourceId() != null) {
+            return account == null ? missing(instance, report) : Mono.empty();
+        }
+        return account == null ? Mono.empty() : unlinked(instance, account, report);
+    }
+
+    /**
+     * The instance points at an account that is gone. If the instance was being deleted, finishing the delete is the
+     * repair; otherwise the drift is only reported, since the Cloud Controller still knows the instance.
+     */
+    private Mono<Void> missing(ServiceInstance instance, DriftReport report) {
+        String instanceId = instance.getInstanceId();
+
+        return findOperation(instanceId)
+                .flatMap(operation -> {
+                    if (operation.map(ServiceInstanceOperation::isInProgress).orElse(false)) {
+                        return Mono.<Void>empty();
+                    }
+                    boolean deleting = operation.map(op -> op.getType() == OperationType.DELETE).orElse(false);
+                    if (!properties.isRepair() || !deleting) {
+                        return record(report, new Drift(Kind.MISSING_ACCOUNT, instanceId, instance.getAzureResourceId(), false));
+                    }
+                    return repair(instanceId, repositoryExecutor.run(() -> instanceRepository.deleteById(instanceId))
+                            .then(operation.map(op -> operationTracker.succeed(instanceId, op.getOperationId(),
+                                    "CosmosDB account deleted", null)).orElse(Mono.empty()))
+                            .then())
+                            .then(record(report, new Drift(Kind.MISSING_ACCOUNT, instanceId, instance.getAzureResourceId(), true)));
+                });
+    }
+
+    /**
+     * The account was created but its id never made it into the database. Recording it, and completing the create
+     * operation if it was given up on, is the repair.
+     */
+    private Mono<Void> unlinked(ServiceInstance instance, CosmosDBAccountResource account, DriftReport report) {
+        String instanceId = instance.getInstanceId();
+
+        return findOperation(instanceId)
+                .flatMap(operation -> {
+                    if (operation.map(ServiceInstanceOperation::isInProgress).orElse(false)) {
+                        return Mono.<Void>empty();
+                    }
+                    if (!properties.isRepair()) {
+                        return record(report, new Drift(Kind.UNLINKED_ACCOUNT, instanceId, account.getId(), false));
+                    }
+                    return repair(instanceId, repositoryExecutor.call(() -> instanceRepository.findById(instanceId)
+                            .filter(current -> current.getAzureResourceId() == null)
+                            .map(current -> instanceRepository.save(current.withAzureResource(account.getResourceGroupName(), account.getId())))
+                            .orElse(null))
+                            .then(operation.filter(op -> op.getType() == OperationType.CREATE)
+                                    .map(op -> operationTracker.succeed(instanceId, op.getOperationId(),
+                                            "CosmosDB account created", account.getId()))
+                                    .orElse(Mono.empty()))
+                            .then())
+                            .then(record(report, new Drift(Kind.UNLINKED_ACCOUNT, instanceId, account.getId(), true)));
+                });
+    }
+
+    private Mono<Void> orphaned(CosmosDBAccountResource account, DriftReport report) {
+        String instanceId = account.getTags().get(CosmosDBAccountResource.INSTANCE_ID_TAG);
+
+        if (!properties.isRepair() || !properties.isDeleteOrphanedAccounts()) {
+            return record(report, new Drift(Kind.ORPHANED_ACCOUNT, instanceId, account.getId(), false));
+        }
+        return Mono.delay(properties.getRepairPause())
+                .then(cosmosDBAccountClient.deleteAccount(account.getId()))
+                .then(record(report, new Drift(Kind.ORPHANED_ACCOUNT, instanceId, account.getId(), true)));
+    }
+
+    private Mono<Optional<ServiceInstanceOperation>> findOperation(String instanceId) {
+        return operationTracker.find(instanceId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    /**
+     * Runs a repair after the repair pause and under the instance's lock, so it cannot race an OSB request.
+     */
+    private Mono<Void> repair(String instanceId, Mono<Void> action) {
+        return Mono.delay(properties.getRepairPause())
+                .then(instanceLocks.withLock(instanceId, action));
+    }
+
+    private Mono<Void> record(DriftReport report, Drift drift) {
+        return Mono.fromRunnable(() -> {
+            logger.warn("Drift {} on Service Instance [{}] and account {}{}", drift.getKind(), drift.getInstanceId(),
+                    drift.getAzureResourceId(), drift.isRepaired() ? ", repaired" : "");
+            meterRegistry.counter("broker.reconciliation.drift", "kind", drift.getKind().name(),
+                    "repaired", Boolean.toString(drift.isRepaired())).increment();
+            report.add(drift);
+        });
+    }
+
+    private Duration jittered(Duration delay) {
+        long jitter = properties.getJitter().toMillis();
+        return delay.plusMillis(jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+    }
+
+    @Override
+    public void destroy() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    /**
+     * The subscription's accounts, indexed for matching instances against them.
+     */
+    private static class Listing {
+
+        private final Map<String, CosmosDBAccountResource> byId = new HashMap<>();
+
+        private final Map<String, CosmosDBAccountResource> byName = new HashMap<>();
+
+        private final Set<String> unmatchedManagedIds = new HashSet<>();
+
+        Listing(List<CosmosDBAccountResource> accounts) {
+            for (CosmosDBAccountResource account : accounts) {
+                byId.put(normalize(account.getId()), account);
+                byName.put(account.getName(), account);
+                if (account.isBrokerManaged()) {
+                    unmatchedManagedIds.add(normalize(account.getId()));
+                }
+            }
+        }
+
+        /**
+         * Finds the instance's account by its recorded id or, if none was recorded, by name, as accounts are named
+         * after their instance.
+         */
+        CosmosDBAccountResource match(ServiceInstance instance) {
+            CosmosDBAccountResource account = instance.getAzureResourceId() != null
+                    ? byId.get(normalize(instance.getAzureResourceId()))
+                    : byName.get(instance.getInstanceId());
+            if (account != null) {
+                unmatchedManagedIds.remove(normalize(account.getId()));
+            }
+            return account;
+        }
+
+        List<CosmosDBAccountResource> unmatchedManagedAccounts() {
+            return unmatchedManagedIds.stream().map(byId::get).collect(Collectors.toList());
+        }
+
+        private static String normalize(String id) {
+            return id.toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.reconciliation;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Exposes the report of the last reconciliation run at {@code /actuator/reconciliation}.
+ */
+@Endpoint(id = "reconciliation")
+public class ReconciliationEndpoint {
+
+    private final Reconciler reconciler;
+
+    public ReconciliationEndpoint(Reconciler reconciler) {
+        this.reconciler = reconciler;
+    }
+
+    @ReadOperation
+    public DriftReport lastReport() {
+        return reconciler.getLastReport();
+    }
+}
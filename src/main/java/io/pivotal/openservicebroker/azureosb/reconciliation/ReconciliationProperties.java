@@ -0,0 +1,142 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.reconciliation;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "broker.reconciliation")
+public class ReconciliationProperties {
+
+    /**
+     * Whether the broker compares its database with the CosmosDB accounts in Azure in the background.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Delay after startup before the first run.
+     */
+    private Duration initialDelay = Duration.ofMinutes(2);
+
+    /**
+     * Delay between the end of one run and the start of the next.
+     */
+    private Duration interval = Duration.ofHours(1);
+
+    /**
+     * Random extra delay added to each run, so that broker nodes started together do not reconcile together.
+     */
+    private Duration jitter = Duration.ofMinutes(10);
+
+    /**
+     * Service instances read from the database per batch.
+     */
+    private int batchSize = 100;
+
+    /**
+     * Pause between two batches, keeping the run from competing with OSB requests for the persistence threads.
+     */
+    private Duration batchPause = Duration.ofMillis(500);
+
+    /**
+     * Pause before each repair, bounding the rate of writes to the database and Azure.
+     */
+    private Duration repairPause = Duration.ofSeconds(2);
+
+    /**
+     * Whether drift is repaired, or only reported.
+     */
+    private boolean repair = true;
+
+    /**
+     * Whether broker-managed accounts without a service instance are deleted. They are only reported otherwise.
+     */
+    private boolean deleteOrphanedAccounts = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    public void setInitialDelay(Duration initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public Duration getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(Duration jitter) {
+        this.jitter = jitter;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getBatchPause() {
+        return batchPause;
+    }
+
+    public void setBatchPause(Duration batchPause) {
+        this.batchPause = batchPause;
+    }
+
+    public Duration getRepairPause() {
+        return repairPause;
+    }
+
+    public void setRepairPause(Duration repairPause) {
+        this.repairPause = repairPause;
+    }
+
+    public boolean isRepair() {
+        return repair;
+    }
+
+    public void setRepair(boolean repair) {
+        this.repair = repair;
+    }
+
+    public boolean isDeleteOrphanedAccounts() {
+        return deleteOrphanedAccounts;
+    }
+
+    public void setDeleteOrphanedAccounts(boolean deleteOrphanedAccounts) {
+        this.deleteOrphanedAccounts = deleteOrphanedAccounts;
+    }
+}
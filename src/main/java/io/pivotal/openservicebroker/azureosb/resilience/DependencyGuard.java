@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.resilience;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Protects the broker from a slow or failing dependency: calls time out, are limited in number, and are rejected
+ * right away while the dependency's circuit breaker is open. Rejections surface as
+ * {@link DependencyUnavailableException}.
+ */
+public class DependencyGuard {
+
+    private final String dependency;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Bulkhead bulkhead;
+
+    private final ResilienceProperties.Dependency properties;
+
+    /**
+     * @param bulkhead limits concurrent calls, or {@code null} if they are limited elsewhere
+     */
+    public DependencyGuard(String dependency, CircuitBreaker circuitBreaker, Bulkhead bulkhead,
+                           ResilienceProperties.Dependency properties) {
+        this.dependency = dependency;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.properties = properties;
+    }
+
+    public <T> Mono<T> protect(Mono<T> call) {
+        Mono<T> limited = properties.getTimeout() != null ? call.timeout(properties.getTimeout()) : call;
+        if (bulkhead != null) {
+            limited = limited.transform(BulkheadOperator.of(bulkhead));
+        }
+        return limited.transform(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorMap(this::isRejection, this::unavailable);
+    }
+
+    public <T> Flux<T> protect(Flux<T> call) {
+        Flux<T> limited = properties.getTimeout() != null ? call.timeout(properties.getTimeout()) : call;
+        if (bulkhead != null) {
+            limited = limited.transform(BulkheadOperator.of(bulkhead));
+        }
+        return limited.transform(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorMap(this::isRejection, this::unavailable);
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private boolean isRejection(Throwable throwable) {
+        return throwable instanceof CallNotPermittedException || throwable instanceof BulkheadFullException
+                || throwable instanceof RejectedExecutionException;
+    }
+
+    private Throwable unavailable(Throwable throwable) {
+        Duration retryAfter = throwable instanceof CallNotPermittedException
+                ? properties.getWaitDurationInOpenState()
+                : properties.getBusyRetryAfter();
+        return new DependencyUnavailableException(dependency, retryAfter, throwable);
+    }
+}
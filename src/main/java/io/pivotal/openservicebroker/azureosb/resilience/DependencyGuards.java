@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.resilience;
+
+/**
+ * The {@link DependencyGuard}s of the broker's remote dependencies, one circuit breaker each.
+ */
+public class DependencyGuards {
+
+    public static final String AZURE = "azure";
+
+    public static final String CLOUDFOUNDRY = "cloudfoundry";
+
+    private final DependencyGuard azure;
+
+    private final DependencyGuard cloudFoundry;
+
+    public DependencyGuards(DependencyGuard azure, DependencyGuard cloudFoundry) {
+        this.azure = azure;
+        this.cloudFoundry = cloudFoundry;
+    }
+
+    /**
+     * Guards Azure Resource Manager calls.
+     */
+    public DependencyGuard azure() {
+        return azure;
+    }
+
+    /**
+     * Guards Cloud Controller calls.
+     */
+    public DependencyGuard cloudFoundry() {
+        return cloudFoundry;
+    }
+}
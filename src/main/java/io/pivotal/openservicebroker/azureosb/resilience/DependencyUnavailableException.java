@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.resilience;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+
+import java.time.Duration;
+
+/**
+ * A call to a dependency was rejected without being attempted, because its circuit breaker is open or it is
+ * saturated. OSB requests failing with it are answered with {@code 503 Service Unavailable} and a {@code Retry-After}.
+ */
+public class DependencyUnavailableException extends ServiceBrokerException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String dependency;
+
+    private final Duration retryAfter;
+
+    public DependencyUnavailableException(String dependency, Duration retryAfter, Throwable cause) {
+        super(dependency + " is currently unavailable, retry in " + retryAfter.getSeconds() + " seconds", cause);
+        this.dependency = dependency;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.resilience;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.openservicebroker.azureosb.azure.AzureCosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.cloudfoundry.CloudFoundryClientNameLookup;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+@Configuration
+@EnableConfigurationProperties(ResilienceProperties.class)
+public class ResilienceConfiguration {
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry() {
+        return CircuitBreakerRegistry.ofDefaults();
+    }
+
+    @Bean
+    public DependencyGuards dependencyGuards(CircuitBreakerRegistry circuitBreakerRegistry, ResilienceProperties properties,
+                                             MeterRegistry meterRegistry) {
+        return new DependencyGuards(
+                guard(DependencyGuards.AZURE, properties.getAzure(), AzureCosmosDBAccountClient::isTransient,
+                        circuitBreakerRegistry, meterRegistry),
+                guard(DependencyGuards.CLOUDFOUNDRY, properties.getCloudfoundry(), CloudFoundryClientNameLookup::isTransient,
+                        circuitBreakerRegistry, meterRegistry));
+    }
+
+    @Bean
+    public CircuitBreakersEndpoint circuitBreakersEndpoint(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return new CircuitBreakersEndpoint(circuitBreakerRegistry);
+    }
+
+    private static DependencyGuard guard(String dependency, ResilienceProperties.Dependency properties,
+                                         Predicate<Throwable> isFailure, CircuitBreakerRegistry circuitBreakerRegistry,
+                                         MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(dependency, CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .ringBufferSizeInClosedState(properties.getRingBufferSizeInClosedState())
+                .ringBufferSizeInHalfOpenState(properties.getRingBufferSizeInHalfOpenState())
+                .waitDurationInOpenState(properties.getWaitDurationInOpenState())
+                .recordFailure(isFailure)
+                .build());
+        Gauge.builder("broker.circuit.breaker.state", circuitBreaker, ResilienceConfiguration::stateValue)
+                .description("0 closed, 1 half-open, 2 open")
+                .tag("dependency", dependency)
+                .register(meterRegistry);
+
+        Bulkhead bulkhead = properties.getMaxConcurrentCalls() > 0
+                ? Bulkhead.of(dependency, BulkheadConfig.custom()
+                        .maxConcurrentCalls(properties.getMaxConcurrentCalls())
+                        .maxWaitDuration(Duration.ZERO)
+                        .build())
+                : null;
+        return new DependencyGuard(dependency, circuitBreaker, bulkhead, properties);
+    }
+
+    private static double stateValue(CircuitBreaker circuitBreaker) {
+        switch (circuitBreaker.getState()) {
+            case CLOSED:
+                return 0;
+            case HALF_OPEN:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.resilience;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "broker.resilience")
+public class ResilienceProperties {
+
+    /**
+     * Azure Resource Manager. Its calls are already bounded by the Azure threads and their queue, and reads by
+     * {@code broker.azure.call-timeout}.
+     */
+    private Dependency azure = new Dependency(0, null);
+
+    /**
+     * The Cloud Controller, whose client does not block threads, so concurrent calls are bounded here.
+     */
+    private Dependency cloudfoundry = new Dependency(50, Duration.ofSeconds(5));
+
+    public Dependency getAzure() {
+        return azure;
+    }
+
+    public void setAzure(Dependency azure) {
+        this.azure = azure;
+    }
+
+    public Dependency getCloudfoundry() {
+        return cloudfoundry;
+    }
+
+    public void setCloudfoundry(Dependency cloudfoundry) {
+        this.cloudfoundry = cloudfoundry;
+    }
+
+    public static class Dependency {
+
+        /**
+         * Percentage of failed calls at which the circuit breaker opens.
+         */
+        private float failureRateThreshold = 50;
+
+        /**
+         * Calls the failure rate is computed over while the circuit breaker is closed.
+         */
+        private int ringBufferSizeInClosedState = 20;
+
+        /**
+         * Trial calls let through once the circuit breaker is half-open.
+         */
+        private int ringBufferSizeInHalfOpenState = 5;
+
+        /**
+         * How long an open circuit breaker rejects calls before it lets trial calls through.
+         */
+        private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+
+        /**
+         * Calls allowed at the same time; further calls are rejected right away. 0 for no limit.
+         */
+        private int maxConcurrentCalls;
+
+        /**
+         * Upper bound for a single call, or none.
+         */
+        private Duration timeout;
+
+        /**
+         * {@code Retry-After} sent when a call is rejected because the dependency is saturated.
+         */
+        private Duration busyRetryAfter = Duration.ofSeconds(5);
+
+        public Dependency() {
+        }
+
+        Dependency(int maxConcurrentCalls, Duration timeout) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.timeout = timeout;
+        }
+
+        public float getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(float failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getRingBufferSizeInClosedState() {
+            return ringBufferSizeInClosedState;
+        }
+
+        public void setRingBufferSizeInClosedState(int ringBufferSizeInClosedState) {
+            this.ringBufferSizeInClosedState = ringBufferSizeInClosedState;
+        }
+
+        public int getRingBufferSizeInHalfOpenState() {
+            return ringBufferSizeInHalfOpenState;
+        }
+
+        public void setRingBufferSizeInHalfOpenState(int ringBufferSizeInHalfOpenState) {
+            this.ringBufferSizeInHalfOpenState = ringBufferSizeInHalfOpenState;
+        }
+
+        public Duration getWaitDurationInOpenState() {
+            return waitDurationInOpenState;
+        }
+
+        public void setWaitDurationInOpenState(Duration waitDurationInOpenState) {
+            this.waitDurationInOpenState = waitDurationInOpenState;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Duration getBusyRetryAfter() {
+            return busyRetryAfter;
+        }
+
+        public void setBusyRetryAfter(Duration busyRetryAfter) {
+            this.busyRetryAfter = busyRetryAfter;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.pivotal.openservicebroker.azureosb.security;
+
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+
+/**
+ * Requires the {@link AdminProperties admin credentials} for the {@code /admin} API, which creates and lists service
+ * instances outside of the platform, and for all actuator endpoints but health, info and the Prometheus scrape.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@EnableConfigurationProperties(AdminProperties.class)
+public class SecurityConfiguration {
+
+    static final String ADMIN = "ADMIN";
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .csrf().disable()
+                .formLogin().disable()
+                .httpBasic().and()
+                .authorizeExchange()
+                .matchers(EndpointRequest.to("health", "info", "prometheus")).permitAll()
+                .matchers(EndpointRequest.toAnyEndpoint()).hasRole(ADMIN)
+                .pathMatchers("/admin/**").hasRole(ADMIN)
+                .anyExchange().permitAll()
+                .and()
+                .build();
+    }
+
+    @Bean
+    public ReactiveUserDetailsService userDetailsService(AdminProperties properties) {
+        if (!StringUtils.hasText(properties.getPassword())) {
+            return username -> Mono.empty();
+        }
+        PasswordEncoder passwordEncoder = PasswordEncoderFactories.createDelegatingPasswordEncoder();
+        return new MapReactiveUserDetailsService(User.withUsername(properties.getUsername())
+                .password(passwordEncoder.encode(properties.getPassword()))
+                .roles(ADMIN)
+                .build());
+    }
+}
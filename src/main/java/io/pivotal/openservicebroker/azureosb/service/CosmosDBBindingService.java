@@ -16,81 +16,205 @@
 
 package io.pivotal.openservicebroker.azureosb.service;
 
-import com.microsoft.azure.management.Azure;
 import com.microsoft.azure.management.cosmosdb.DatabaseAccountConnectionString;
 import com.microsoft.azure.management.cosmosdb.DatabaseAccountListConnectionStringsResult;
 import com.microsoft.azure.management.cosmosdb.DatabaseAccountListKeysResult;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.credentials.CredentialsCache;
+import io.pivotal.openservicebroker.azureosb.credentials.CredentialsStore;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
 import io.pivotal.openservicebroker.azureosb.data.repository.ServiceBindingRepository;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import io.pivotal.openservicebroker.azureosb.idempotency.IdempotentRequests;
+import io.pivotal.openservicebroker.azureosb.metrics.BrokerMetrics;
+import io.pivotal.openservicebroker.azureosb.model.AccountKey;
 import io.pivotal.openservicebroker.azureosb.model.ServiceBinding;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingExistsException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
 import org.springframework.cloud.servicebroker.model.binding.*;
-import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceAppBindingResponse.CreateServiceInstanceAppBindingResponseBuilder;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Mono;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
 
-import static java.util.Objects.requireNonNull;
-
 @Service
 public class CosmosDBBindingService implements ServiceInstanceBindingService {
 
     private static final Logger logger = LoggerFactory.getLogger(CosmosDBBindingService.class);
 
     private final ServiceBindingRepository bindingRepository;
-    private static final String RESOURCE_GROUP = "resourceGroupName";
 
-    public CosmosDBBindingService(ServiceBindingRepository bindingRepository) {
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final CosmosDBAccountClient cosmosDBAccountClient;
+
+    private final CredentialsCache credentialsCache;
+
+    private final BrokerMetrics brokerMetrics;
+
+    private final ServiceInstanceRepository instanceRepository;
+
+    private final CredentialsStore credentialsStore;
+
+    private final IdempotentRequests idempotentRequests;
+
+    public CosmosDBBindingService(ServiceBindingRepository bindingRepository, RepositoryExecutor repositoryExecutor,
+                                  CosmosDBAccountClient cosmosDBAccountClient, CredentialsCache credentialsCache,
+                                  BrokerMetrics brokerMetrics, ServiceInstanceRepository instanceRepository,
+                                  CredentialsStore credentialsStore, IdempotentRequests idempotentRequests) {
         this.bindingRepository = bindingRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.cosmosDBAccountClient = cosmosDBAccountClient;
+        this.credentialsCache = credentialsCache;
+        this.brokerMetrics = brokerMetrics;
+        this.instanceRepository = instanceRepository;
+        this.credentialsStore = credentialsStore;
+        this.idempotentRequests = idempotentRequests;
     }
 
     @Override
     public Mono<CreateServiceInstanceBindingResponse> createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
-        CreateServiceInstanceAppBindingResponseBuilder responseBuilder =
-                CreateServiceInstanceAppBindingResponse.builder();
+        String bindingId = request.getBindingId();
+        String instanceId = request.getServiceInstanceId();
+        String key = IdempotentRequests.bindingKey(bindingId);
+        String requestHash = idempotentRequests.hash(instanceId, request.getServiceDefinitionId(), request.getPlanId(),
+                request.getParameters(), request.getBindResource() != null ? request.getBindResource().getAppGuid() : null);
 
-        Optional<ServiceBinding> binding = bindingRepository.findById(request.getBindingId());
+        return brokerMetrics.timeOsbRequest("create_binding", request.getPlanId(), idempotentRequests.deduplicate(key, requestHash,
+                () -> findBinding(bindingId)
+                        .flatMap(existing -> (existing.isPresent()
+                                ? idempotentRequests.verify(key, requestHash, () -> new ServiceInstanceBindingExistsException(instanceId, bindingId))
+                                : Mono.<Void>empty())
+                                .then(retrieveCredentials(instanceId, existing.orElse(null)))
+                                .flatMap(resolved -> {
+                                    if (existing.isPresent()) {
+                                        return storeCredentials(existing.get(), instanceId, resolved)
+                                                .thenReturn(createResponse(true, resolved.credentials));
+                                    }
+                                    ServiceBinding binding = new ServiceBinding(bindingId, instanceId, request.getParameters(),
+                                            encrypt(instanceId, resolved), resolved.version);
+                                    return repositoryExecutor.run(() -> bindingRepository.save(binding))
+                                            .then(idempotentRequests.remember(key, requestHash, null))
+                                            .thenReturn(createResponse(false, resolved.credentials))
+                                            .onErrorReturn(DataIntegrityViolationException.class, createResponse(true, resolved.credentials));
+                                }))));
+    }
 
-        if (binding.isPresent()) {
-            responseBuilder
-                    .bindingExisted(true)
-                    .credentials(retrieveCredentials((String) request.getParameters().get(RESOURCE_GROUP), request.getServiceInstanceId()));
-        } else {
-            responseBuilder
-                    .bindingExisted(false)
-                    .credentials(retrieveCredentials((String) request.getParameters().get(RESOURCE_GROUP), request.getServiceInstanceId()));
-            bindingRepository.save(new ServiceBinding(request.getBindingId(),request.getParameters(), new HashMap<>()));
-        }
+    private static CreateServiceInstanceBindingResponse createResponse(boolean bindingExisted, Map<String, Object> credentials) {
+        return CreateServiceInstanceAppBindingResponse.builder()
+                .bindingExisted(bindingExisted)
+                .credentials(credentials)
+                .build();
+    }
 
-        return Mono.just(responseBuilder.build());
+    private Mono<Optional<ServiceBinding>> findBinding(String bindingId) {
+        return repositoryExecutor.call(() -> bindingRepository.findById(bindingId));
     }
 
-    private Map<String, Object> retrieveCredentials(String resourceGroup, String instanceId) {
-        Azure azure = null;
-        try {
-            azure = Azure.authenticate(new File(requireNonNull(this.getClass().getClassLoader().getResource("auth.json")).getFile())).withDefaultSubscription();
-        } catch (IOException e) {
-            logger.error("Could not retrieve credentials from file auth.json", e);
+    /**
+     * Serves the credentials from the binding itself or another binding of the same instance when they were stored
+     * for the instance's current credentials version, and from Azure otherwise. If Azure fails, credentials the binding
+     * stored for the previous version are served instead: a single key rotation leaves the previous keys working, a
+     * second one does not.
+     */
+    private Mono<ResolvedCredentials> retrieveCredentials(String instanceId, ServiceBinding binding) {
+        return repositoryExecutor.call(() -> instanceRepository.findById(instanceId).orElse(null))
+                .switchIfEmpty(Mono.error(new ServiceInstanceDoesNotExistException(instanceId)))
+                .map(CredentialsState::new)
+                .flatMap(state -> storedCredentials(instanceId, binding, state)
+                        .switchIfEmpty(fetchCredentials(instanceId, state)
+                                .onErrorResume(throwable -> isStillValid(binding, state),
+                                        throwable -> decrypt(instanceId, binding)
+                                                .doOnNext(stale -> logger.warn("Could not fetch credentials of Service Instance [{}] from Azure, serving stored credentials of version {}",
+                                                        instanceId, binding.getCredentialsVersion(), throwable))
+                                                .switchIfEmpty(Mono.error(throwable)))));
+    }
+
+    private static boolean isStillValid(ServiceBinding binding, CredentialsState state) {
+        return binding != null && binding.getEncryptedCredentials() != null && binding.getCredentialsVersion() != null
+                && binding.getCredentialsVersion() >= state.version - 1;
+    }
+
+    private Mono<ResolvedCredentials> storedCredentials(String instanceId, ServiceBinding binding, CredentialsState state) {
+        if (!credentialsStore.isEnabled()) {
+            return Mono.empty();
+        }
+        if (binding != null && binding.getEncryptedCredentials() != null && Objects.equals(binding.getCredentialsVersion(), state.version)) {
+            return decrypt(instanceId, binding);
         }
+        return repositoryExecutor.call(() -> bindingRepository.findFirstByInstanceIdAndCredentialsVersionAndEncryptedCredentialsIsNotNull(instanceId, state.version)
+                .orElse(null))
+                .flatMap(sibling -> decrypt(instanceId, sibling));
+    }
 
-        DatabaseAccountListConnectionStringsResult connectionStrings = azure.cosmosDBAccounts().listConnectionStrings(resourceGroup, instanceId);
-        DatabaseAccountListKeysResult keys = azure.cosmosDBAccounts().listKeys(resourceGroup, instanceId);
+    /**
+     * Completes empty if the stored credentials cannot be decrypted, e.g. after their master key was dropped, so that
+     * they are fetched from Azure again.
+     */
+    private Mono<ResolvedCredentials> decrypt(String instanceId, ServiceBinding binding) {
+        return Mono.fromCallable(() -> new ResolvedCredentials(credentialsStore.decrypt(instanceId, binding.getEncryptedCredentials()),
+                binding.getCredentialsVersion(), true))
+                .onErrorResume(IllegalStateException.class, e -> {
+                    logger.warn("Ignoring stored credentials of Service Instance Binding [{}]", binding.getBindingId(), e);
+                    return Mono.empty();
+                });
+    }
 
-        Map<String, Object> credentials = toCredentialsMap(connectionStrings, keys);
+    private String encrypt(String instanceId, ResolvedCredentials resolved) {
+        return credentialsStore.isEnabled() ? credentialsStore.encrypt(instanceId, resolved.credentials) : null;
+    }
 
-        return credentials;
+    /**
+     * Keeps the binding's stored credentials up to date after they had to be fetched from Azure. A failure here does
+     * not fail the request, the credentials are simply fetched again next time.
+     */
+    private Mono<Void> storeCredentials(ServiceBinding binding, String instanceId, ResolvedCredentials resolved) {
+        if (!credentialsStore.isEnabled() || resolved.fromStore
+                || (binding.getEncryptedCredentials() != null && Objects.equals(binding.getCredentialsVersion(), resolved.version))) {
+            return Mono.empty();
+        }
+        return repositoryExecutor.run(() -> bindingRepository.save(binding.withCredentials(instanceId, encrypt(instanceId, resolved), resolved.version)))
+                .onErrorResume(throwable -> {
+                    logger.warn("Could not store the credentials of Service Instance Binding [{}]", binding.getBindingId(), throwable);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Both ARM calls are subscribed at once, so a bind waits for the slower of the two rather than their sum. When
+     * both fail, the first failure is reported; a plain zip would drop the second one and throw it from the
+     * subscribing thread instead.
+     */
+    private Mono<ResolvedCredentials> fetchCredentials(String instanceId, CredentialsState state) {
+        return credentialsCache.get(state.resourceGroup, instanceId, state.version,
+                () -> Mono.zipDelayError(cosmosDBAccountClient.listConnectionStrings(state.resourceGroup, instanceId),
+                        cosmosDBAccountClient.listKeys(state.resourceGroup, instanceId))
+                        .onErrorMap(Exceptions::isMultiple, throwable -> Exceptions.unwrapMultiple(throwable).get(0))
+                        .map(results -> toCredentialsMap(results.getT1(), results.getT2(), state.activeKey, state.version)))
+                .map(credentials -> new ResolvedCredentials(credentials, state.version, false));
     }
 
-    private Map<String, Object> toCredentialsMap(DatabaseAccountListConnectionStringsResult connectionStrings, DatabaseAccountListKeysResult keys) {
+    /**
+     * Lists only the active pair of keys, and the connection strings built on them, so that applications never hold
+     * the standby keys that the next rotation regenerates.
+     */
+    static Map<String, Object> toCredentialsMap(DatabaseAccountListConnectionStringsResult connectionStrings, DatabaseAccountListKeysResult keys,
+                                                AccountKey activeKey, int credentialsVersion) {
         Map<String, Object> credentials = new HashMap<>();
         List<Map<String, String>> connectionStringList = new ArrayList<>();
+        boolean primary = activeKey == AccountKey.PRIMARY;
 
         for (DatabaseAccountConnectionString connectionString : connectionStrings.connectionStrings()) {
+            if (!usesKey(connectionString, activeKey)) {
+                continue;
+            }
             Map<String, String> connectionStringMap = new HashMap<>();
             connectionStringMap.put("connectionString", connectionString.connectionString());
             connectionStringMap.put("description", connectionString.description());
@@ -100,41 +224,93 @@ public class CosmosDBBindingService implements ServiceInstanceBindingService {
         credentials.put("cosmosdb_connection_strings", connectionStringList);
 
         Map<String, String> keysMap = new HashMap<>();
-        keysMap.put("primaryMasterKey", keys.primaryMasterKey());
-        keysMap.put("primaryReadonlyMasterKey", keys.primaryReadonlyMasterKey());
-        keysMap.put("secondaryMasterKey", keys.secondaryMasterKey());
-        keysMap.put("secondaryReadonlyMasterKey", keys.secondaryReadonlyMasterKey());
+        if (primary) {
+            keysMap.put("primaryMasterKey", keys.primaryMasterKey());
+            keysMap.put("primaryReadonlyMasterKey", keys.primaryReadonlyMasterKey());
+        } else {
+            keysMap.put("secondaryMasterKey", keys.secondaryMasterKey());
+            keysMap.put("secondaryReadonlyMasterKey", keys.secondaryReadonlyMasterKey());
+        }
 
         credentials.put("cosmosdb_keys", keysMap);
+
+        credentials.put("cosmosdb_master_key", primary ? keys.primaryMasterKey() : keys.secondaryMasterKey());
+        credentials.put("cosmosdb_readonly_master_key", primary ? keys.primaryReadonlyMasterKey() : keys.secondaryReadonlyMasterKey());
+        credentials.put("cosmosdb_active_key", activeKey.name().toLowerCase(Locale.ROOT));
+        credentials.put("cosmosdb_credentials_version", credentialsVersion);
         return credentials;
     }
 
+    /**
+     * ARM names the key a connection string is built on at the start of its description, e.g.
+     * "Secondary Read-Only SQL Connection String".
+     */
+    private static boolean usesKey(DatabaseAccountConnectionString connectionString, AccountKey key) {
+        String description = connectionString.description();
+        return description != null && description.toUpperCase(Locale.ROOT).startsWith(key.name());
+    }
+
+    private static final class ResolvedCredentials {
+
+        private final Map<String, Object> credentials;
+
+        private final Integer version;
+
+        /**
+         * Whether the credentials were decrypted from a binding rather than fetched from Azure.
+         */
+        private final boolean fromStore;
+
+        private ResolvedCredentials(Map<String, Object> credentials, Integer version, boolean fromStore) {
+            this.credentials = credentials;
+            this.version = version;
+            this.fromStore = fromStore;
+        }
+    }
+
+    private static final class CredentialsState {
+
+        private final String resourceGroup;
+
+        private final AccountKey activeKey;
+
+        private final int version;
+
+        private CredentialsState(ServiceInstance serviceInstance) {
+            this.resourceGroup = serviceInstance.getResourceGroup();
+            this.activeKey = serviceInstance.getActiveKey();
+            this.version = serviceInstance.getCredentialsVersion();
+        }
+    }
+
     @Override
     public Mono<GetServiceInstanceBindingResponse> getServiceInstanceBinding(GetServiceInstanceBindingRequest request) {
         String bindingId = request.getBindingId();
+        String instanceId = request.getServiceInstanceId();
 
-        Optional<ServiceBinding> serviceBinding = bindingRepository.findById(bindingId);
+        return brokerMetrics.timeOsbRequest("get_binding", null, repositoryExecutor.call(() -> bindingRepository.findById(bindingId).orElse(null))
+                .switchIfEmpty(Mono.error(new ServiceInstanceBindingDoesNotExistException(bindingId)))
+                .flatMap(serviceBinding -> retrieveCredentials(instanceId, serviceBinding)
+                        .flatMap(resolved -> storeCredentials(serviceBinding, instanceId, resolved)
+                                .thenReturn(toGetResponse(serviceBinding, resolved.credentials)))));
+    }
 
-        if (serviceBinding.isPresent()) {
-            return Mono.just(GetServiceInstanceAppBindingResponse.builder()
-                    .parameters(serviceBinding.get().getParameters())
-                    .credentials(retrieveCredentials((String) serviceBinding.get().getParameters().get(RESOURCE_GROUP), request.getServiceInstanceId()))
-                    .build());
-        } else {
-            throw new ServiceInstanceBindingDoesNotExistException(bindingId);
-        }
+    private GetServiceInstanceBindingResponse toGetResponse(ServiceBinding serviceBinding, Map<String, Object> credentials) {
+        return GetServiceInstanceAppBindingResponse.builder()
+                .parameters(serviceBinding.getParameters())
+                .credentials(credentials)
+                .build();
     }
 
     @Override
     public Mono<DeleteServiceInstanceBindingResponse> deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
         String bindingId = request.getBindingId();
 
-        if (bindingRepository.existsById(bindingId)) {
-            bindingRepository.deleteById(bindingId);
-
-            return Mono.just(DeleteServiceInstanceBindingResponse.builder().build());
-        } else {
-            throw new ServiceInstanceBindingDoesNotExistException(bindingId);
-        }
+        return brokerMetrics.timeOsbRequest("delete_binding", request.getPlanId(), repositoryExecutor.call(() -> bindingRepository.existsById(bindingId))
+                .flatMap(exists -> exists
+                        ? repositoryExecutor.run(() -> bindingRepository.deleteById(bindingId))
+                                .then(idempotentRequests.forget(IdempotentRequests.bindingKey(bindingId)))
+                        : Mono.<Void>error(new ServiceInstanceBindingDoesNotExistException(bindingId)))
+                .thenReturn(DeleteServiceInstanceBindingResponse.builder().build()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.service;
+
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.catalog.BrokerCatalog;
+import io.pivotal.openservicebroker.azureosb.credentials.CredentialsCache;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import io.pivotal.openservicebroker.azureosb.metrics.BrokerMetrics;
+import io.pivotal.openservicebroker.azureosb.model.OperationType;
+import io.pivotal.openservicebroker.azureosb.model.ProvisioningTask;
+import io.pivotal.openservicebroker.azureosb.provisioning.ProvisioningTaskExecutor;
+import io.pivotal.openservicebroker.azureosb.tracing.BrokerTracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Creates and deletes the CosmosDB accounts behind service instances once their turn in the provisioning queue has come,
+ * and records the outcome on the instance's operation.
+ */
+@Component
+public class CosmosDBProvisioner implements ProvisioningTaskExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(CosmosDBProvisioner.class);
+
+    private final CosmosDBAccountClient cosmosDBAccountClient;
+
+    private final ServiceInstanceRepository instanceRepository;
+
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final OperationTracker operationTracker;
+
+    private final CredentialsCache credentialsCache;
+
+    private final BrokerMetrics brokerMetrics;
+
+    private final BrokerTracing brokerTracing;
+
+    private final BrokerCatalog brokerCatalog;
+
+    public CosmosDBProvisioner(CosmosDBAccountClient cosmosDBAccountClient, ServiceInstanceRepository instanceRepository,
+                               RepositoryExecutor repositoryExecutor, OperationTracker operationTracker,
+                               CredentialsCache credentialsCache, BrokerMetrics brokerMetrics, BrokerTracing brokerTracing,
+                               BrokerCatalog brokerCatalog) {
+        this.cosmosDBAccountClient = cosmosDBAccountClient;
+        this.instanceRepository = instanceRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.operationTracker = operationTracker;
+        this.credentialsCache = credentialsCache;
+        this.brokerMetrics = brokerMetrics;
+        this.brokerTracing = brokerTracing;
+        this.brokerCatalog = brokerCatalog;
+    }
+
+    @Override
+    public Mono<Void> execute(ProvisioningTask task) {
+        return task.getType() == OperationType.CREATE
+                ? brokerTracing.span("provisioning create", provision(task))
+                : brokerTracing.span("provisioning delete", deprovision(task));
+    }
+
+    private Mono<Void> provision(ProvisioningTask task) {
+        String instanceId = task.getInstanceId();
+
+        return brokerMetrics.timeProvisioning("create", Mono.defer(() -> cosmosDBAccountClient.createAccount(instanceId, task.getResourceGroup(),
+                brokerCatalog.profileFor(task.getPlanId())))
+                .doOnNext(account -> logger.info("Successfully created CosmosDB account for {}", instanceId))
+                .flatMap(account -> repositoryExecutor.call(() -> instanceRepository.findById(instanceId)
+                        .map(serviceInstance -> instanceRepository.save(serviceInstance.withAzureResource(account.getResourceGroupName(), account.getId())))
+                        .orElse(null))
+                        .then(operationTracker.succeed(instanceId, task.getOperationId(), "CosmosDB account created", account.getId()))))
+                .onErrorResume(throwable -> {
+                    logger.error("Creating CosmosDB account for Service Instance [{}] failed", instanceId, throwable);
+                    return operationTracker.fail(instanceId, task.getOperationId(), "CosmosDB account creation failed: " + throwable.getMessage());
+                })
+                .then();
+    }
+
+    private Mono<Void> deprovision(ProvisioningTask task) {
+        String instanceId = task.getInstanceId();
+
+        return brokerMetrics.timeProvisioning("delete", cosmosDBAccountClient.deleteAccount(task.getAzureResourceId())
+                .doOnSuccess(ignored -> credentialsCache.invalidate(task.getResourceGroup(), instanceId))
+                .then(repositoryExecutor.run(() -> instanceRepository.deleteById(instanceId)))
+                .then(operationTracker.succeed(instanceId, task.getOperationId(), "CosmosDB account deleted", null)))
+                .onErrorResume(throwable -> {
+                    logger.error("Deleting CosmosDB account for Service Instance [{}] failed", instanceId, throwable);
+                    return operationTracker.fail(instanceId, task.getOperationId(), "CosmosDB account deletion failed: " + throwable.getMessage());
+                })
+                .then();
+    }
+}
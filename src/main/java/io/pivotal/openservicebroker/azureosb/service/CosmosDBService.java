@@ -16,30 +16,31 @@
 
 package io.pivotal.openservicebroker.azureosb.service;
 
-import com.microsoft.azure.management.Azure;
-import com.microsoft.azure.management.cosmosdb.CosmosDBAccount;
-import com.microsoft.azure.management.cosmosdb.DatabaseAccountKind;
-import com.microsoft.azure.management.resources.fluentcore.arm.Region;
-import com.microsoft.rest.ServiceCallback;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountResource;
+import io.pivotal.openservicebroker.azureosb.cloudfoundry.CloudFoundryNameResolver;
+import io.pivotal.openservicebroker.azureosb.data.InstanceLocks;
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
 import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceRepository;
+import io.pivotal.openservicebroker.azureosb.idempotency.IdempotentRequests;
+import io.pivotal.openservicebroker.azureosb.metrics.BrokerMetrics;
+import io.pivotal.openservicebroker.azureosb.provisioning.ProvisioningQueue;
+import io.pivotal.openservicebroker.azureosb.model.OperationType;
+import io.pivotal.openservicebroker.azureosb.model.ProvisioningTask;
 import io.pivotal.openservicebroker.azureosb.model.ServiceInstance;
-import org.cloudfoundry.operations.CloudFoundryOperations;
-import org.cloudfoundry.operations.organizations.OrganizationSummary;
-import org.cloudfoundry.operations.spaces.SpaceSummary;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstanceOperation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
 import org.springframework.cloud.servicebroker.model.CloudFoundryContext;
 import org.springframework.cloud.servicebroker.model.instance.*;
-import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceResponse.CreateServiceInstanceResponseBuilder;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuple2;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.Optional;
 
 @Service
 public class CosmosDBService implements ServiceInstanceService {
@@ -48,13 +49,37 @@ public class CosmosDBService implements ServiceInstanceService {
 
     private static final String RESOURCE_GROUP = "resourceGroupName";
 
-    private final CloudFoundryOperations cloudFoundryOperations;
+    private final CloudFoundryNameResolver cloudFoundryNameResolver;
 
     private final ServiceInstanceRepository instanceRepository;
 
-    public CosmosDBService(CloudFoundryOperations cloudFoundryOperations, ServiceInstanceRepository instanceRepository) {
-        this.cloudFoundryOperations = cloudFoundryOperations;
+    private final RepositoryExecutor repositoryExecutor;
+
+    private final CosmosDBAccountClient cosmosDBAccountClient;
+
+    private final OperationTracker operationTracker;
+
+    private final ProvisioningQueue provisioningQueue;
+
+    private final BrokerMetrics brokerMetrics;
+
+    private final InstanceLocks instanceLocks;
+
+    private final IdempotentRequests idempotentRequests;
+
+    public CosmosDBService(CloudFoundryNameResolver cloudFoundryNameResolver, ServiceInstanceRepository instanceRepository,
+                           RepositoryExecutor repositoryExecutor, CosmosDBAccountClient cosmosDBAccountClient,
+                           OperationTracker operationTracker, ProvisioningQueue provisioningQueue, BrokerMetrics brokerMetrics,
+                           InstanceLocks instanceLocks, IdempotentRequests idempotentRequests) {
+        this.cloudFoundryNameResolver = cloudFoundryNameResolver;
         this.instanceRepository = instanceRepository;
+        this.repositoryExecutor = repositoryExecutor;
+        this.cosmosDBAccountClient = cosmosDBAccountClient;
+        this.operationTracker = operationTracker;
+        this.provisioningQueue = provisioningQueue;
+        this.brokerMetrics = brokerMetrics;
+        this.instanceLocks = instanceLocks;
+        this.idempotentRequests = idempotentRequests;
     }
 
     @Override
@@ -62,58 +87,77 @@ public class CosmosDBService implements ServiceInstanceService {
         logger.info("Creating Service Instance [{}] for Service [{}] and Plan [{}]", request.getServiceInstanceId(), request.getServiceDefinitionId(), request.getPlanId());
 
         String instanceId = request.getServiceInstanceId();
+        String key = IdempotentRequests.instanceKey(instanceId);
+        String requestHash = requestHash(request);
+
+        return brokerMetrics.timeOsbRequest("create_instance", request.getPlanId(), idempotentRequests.deduplicate(key, requestHash,
+                () -> instanceLocks.withLock(instanceId, repositoryExecutor.call(() -> instanceRepository.existsById(instanceId))
+                        .flatMap(exists -> exists
+                                ? idempotentRequests.verify(key, requestHash,
+                                        () -> new ServiceInstanceExistsException(instanceId, request.getServiceDefinitionId()))
+                                        .then(existingInstance(instanceId))
+                                : startCreate(request, requestHash)))));
+    }
 
-        CreateServiceInstanceResponseBuilder responseBuilder = CreateServiceInstanceResponse.builder();
-
-        if (instanceRepository.existsById(instanceId)) {
-            return Mono.just(responseBuilder.instanceExisted(true).operation("Service Instance Already Exists in the database").build());
-        } else {
-            Azure azure = null;
-            try {
-                azure = Azure.authenticate(new File(this.getClass().getClassLoader().getResource("auth.json").getFile())).withDefaultSubscription();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            azure.cosmosDBAccounts().define(instanceId)
-                    .withRegion(Region.EUROPE_WEST)
-                    .withNewResourceGroup((String) request.getParameters().get(RESOURCE_GROUP))
-                    .withKind(DatabaseAccountKind.GLOBAL_DOCUMENT_DB)
-                    .withSessionConsistency()
-                    .withWriteReplication(Region.EUROPE_NORTH)
-                    .createAsync(
-                            new ServiceCallback<CosmosDBAccount>() {
-                                @Override
-                                public void failure(Throwable throwable) {
-                                    logger.error("Houston, we have a problem!", throwable);
-                                }
-
-                                @Override
-                                public void success(CosmosDBAccount cosmosDBAccount) {
-                                    logger.info("Successfully started database creation for {}. Actual availability can take more than 15 minutes.", instanceId);
-                                    saveInstance(request, instanceId);
-                                }
-                            }
-                    );
-
-            return Mono.just(responseBuilder.instanceExisted(true).operation("Service Instance Creating").build());
-        }
+    /**
+     * What a repeated request must ask for again to count as a retry rather than a conflict.
+     */
+    private String requestHash(CreateServiceInstanceRequest request) {
+        CloudFoundryContext context = request.getContext() instanceof CloudFoundryContext
+                ? (CloudFoundryContext) request.getContext()
+                : null;
+        return idempotentRequests.hash(request.getServiceDefinitionId(), request.getPlanId(), request.getParameters(),
+                context != null ? context.getOrganizationGuid() : null, context != null ? context.getSpaceGuid() : null);
+    }
+
+    /**
+     * A repeated request for an instance that is still being created gets the running operation back.
+     */
+    private Mono<CreateServiceInstanceResponse> existingInstance(String instanceId) {
+        return operationTracker.find(instanceId)
+                .filter(operation -> operation.getType() == OperationType.CREATE && operation.isInProgress())
+                .map(operation -> CreateServiceInstanceResponse.builder()
+                        .async(true)
+                        .operation(operation.getOperationId())
+                        .build())
+                .defaultIfEmpty(CreateServiceInstanceResponse.builder()
+                        .instanceExisted(true)
+                        .operation("Service Instance Already Exists in the database")
+                        .build());
+    }
+
+    private Mono<CreateServiceInstanceResponse> startCreate(CreateServiceInstanceRequest request, String requestHash) {
+        String instanceId = request.getServiceInstanceId();
+        String resourceGroup = (String) request.getParameters().get(RESOURCE_GROUP);
+
+        return saveInstance(request)
+                .then(operationTracker.start(instanceId, OperationType.CREATE, "Creating CosmosDB account", null))
+                .flatMap(operation -> idempotentRequests.remember(IdempotentRequests.instanceKey(instanceId), requestHash,
+                        operation.getOperationId())
+                        .thenReturn(operation))
+                .flatMap(operation -> provisioningQueue.enqueue(ProvisioningTask.create(instanceId, operation.getOperationId(), resourceGroup,
+                        request.getPlanId()))
+                        .thenReturn(operation))
+                .map(operation -> CreateServiceInstanceResponse.builder()
+                        .async(true)
+                        .operation(operation.getOperationId())
+                        .build())
+                .onErrorResume(DataIntegrityViolationException.class, throwable -> {
+                    logger.info("Service Instance [{}] was created by a concurrent request", instanceId);
+                    return existingInstance(instanceId);
+                });
     }
 
     @Override
     public Mono<GetServiceInstanceResponse> getServiceInstance(GetServiceInstanceRequest request) {
         String instanceId = request.getServiceInstanceId();
 
-        Optional<ServiceInstance> serviceInstance = instanceRepository.findById(instanceId);
-
-        if (serviceInstance.isPresent()) {
-            return Mono.just(GetServiceInstanceResponse.builder()
-                    .serviceDefinitionId(serviceInstance.get().getServiceDefinitionId())
-                    .planId(serviceInstance.get().getPlanId())
-                    .parameters(serviceInstance.get().getParameters())
-                    .build());
-        } else {
-            throw new ServiceInstanceDoesNotExistException(instanceId);
-        }
+        return brokerMetrics.timeOsbRequest("get_instance", null, findInstance(instanceId)
+                .map(serviceInstance -> GetServiceInstanceResponse.builder()
+                        .serviceDefinitionId(serviceInstance.getServiceDefinitionId())
+                        .planId(serviceInstance.getPlanId())
+                        .parameters(serviceInstance.getParameters())
+                        .build()));
     }
 
     @Override
@@ -122,81 +166,162 @@ public class CosmosDBService implements ServiceInstanceService {
 
         String instanceId = request.getServiceInstanceId();
 
-        if (instanceRepository.existsById(instanceId)) {
-            verifySpaceAndOrg(request, instanceId);
+        return brokerMetrics.timeOsbRequest("delete_instance", request.getPlanId(), instanceLocks.withLock(instanceId,
+                findInstance(instanceId)
+                        .flatMap(serviceInstance -> verifySpaceAndOrg(request, serviceInstance)
+                                .then(runningDelete(instanceId))
+                                .switchIfEmpty(provisioningQueue.cancel(instanceId, OperationType.CREATE)
+                                        .flatMap(createCancelled -> createCancelled
+                                                ? removeOrphan(instanceId)
+                                                : findAccount(serviceInstance)
+                                                        .flatMap(this::startDelete)
+                                                        .switchIfEmpty(removeOrphan(instanceId)))))
+                        .flatMap(response -> idempotentRequests.forget(IdempotentRequests.instanceKey(instanceId))
+                                .thenReturn(response))));
+    }
 
-            Azure azure = null;
-            try {
-                azure = Azure.authenticate(new File(this.getClass().getClassLoader().getResource("auth.json").getFile())).withDefaultSubscription();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    /**
+     * A repeated request for an instance that is already being deleted gets the running operation back.
+     */
+    private Mono<DeleteServiceInstanceResponse> runningDelete(String instanceId) {
+        return operationTracker.find(instanceId)
+                .filter(operation -> operation.getType() == OperationType.DELETE && operation.isInProgress())
+                .map(operation -> DeleteServiceInstanceResponse.builder()
+                        .async(true)
+                        .operation(operation.getOperationId())
+                        .build());
+    }
 
-            Optional<CosmosDBAccount> optionalCosmosDBAccount = azure.cosmosDBAccounts().list().stream().filter(c -> c.name().equals(request.getServiceInstanceId())).findFirst();
+    private Mono<DeleteServiceInstanceResponse> startDelete(CosmosDBAccountResource account) {
+        String instanceId = account.getName();
+
+        return operationTracker.start(instanceId, OperationType.DELETE, "Deleting CosmosDB account", account.getId())
+                .flatMap(operation -> provisioningQueue.enqueue(ProvisioningTask.delete(instanceId, operation.getOperationId(),
+                        account.getResourceGroupName(), account.getId()))
+                        .thenReturn(operation))
+                .map(operation -> DeleteServiceInstanceResponse.builder()
+                        .async(true)
+                        .operation(operation.getOperationId())
+                        .build());
+    }
 
-            CosmosDBAccount cosmosDBAccount = optionalCosmosDBAccount.orElseThrow(RuntimeException::new);
+    /**
+     * An instance whose account never came into existence in Azure, e.g. after a failed create, is removed right away.
+     */
+    private Mono<DeleteServiceInstanceResponse> removeOrphan(String instanceId) {
+        return Mono.defer(() -> {
+            logger.info("No CosmosDB account exists for Service Instance [{}], removing it from the database only", instanceId);
+            return repositoryExecutor.run(() -> instanceRepository.deleteById(instanceId))
+                    .then(operationTracker.remove(instanceId));
+        }).thenReturn(DeleteServiceInstanceResponse.builder().build());
+    }
 
-            azure.cosmosDBAccounts().deleteByIdAsync(cosmosDBAccount.id(),
-                    new ServiceCallback<Void>() {
-                        @Override
-                        public void failure(Throwable throwable) {
-                            logger.error("Houston, we have a problem!", throwable);
-                        }
+    @Override
+    public Mono<GetLastServiceOperationResponse> getLastOperation(GetLastServiceOperationRequest request) {
+        String instanceId = request.getServiceInstanceId();
 
-                        @Override
-                        public void success(Void aVoid) {
-                            instanceRepository.deleteById(instanceId);
-                        }
-                    });
+        return brokerMetrics.timeOsbRequest("last_operation", request.getPlanId(), operationTracker.find(instanceId)
+                .switchIfEmpty(Mono.error(new ServiceInstanceDoesNotExistException(instanceId)))
+                .flatMap(operation -> describe(operation)
+                        .map(description -> GetLastServiceOperationResponse.builder()
+                                .operationState(operation.getState())
+                                .description(description)
+                                .deleteOperation(operation.getType() == OperationType.DELETE)
+                                .build())));
+    }
 
-            return Mono.just(DeleteServiceInstanceResponse.builder().build());
-        } else {
-            throw new ServiceInstanceDoesNotExistException(instanceId);
+    /**
+     * Operations still waiting for a provisioning slot report their place in the queue.
+     */
+    private Mono<String> describe(ServiceInstanceOperation operation) {
+        if (!operation.isInProgress()) {
+            return Mono.just(operation.getDescription());
         }
+        return provisioningQueue.position(operation.getInstanceId())
+                .map(position -> "Waiting for Azure, position " + position + " in the provisioning queue")
+                .defaultIfEmpty(operation.getDescription());
     }
 
-    private void verifySpaceAndOrg(DeleteServiceInstanceRequest request, String instanceId) {
-        Mono<String> orgName = resolveOrgName(((CloudFoundryContext) request.getOriginatingIdentity()).getOrganizationGuid());
-        Mono<String> spaceName = resolveSpaceName(((CloudFoundryContext) request.getOriginatingIdentity()).getSpaceGuid());
+    private Mono<CosmosDBAccountResource> findAccount(ServiceInstance serviceInstance) {
+        String instanceId = serviceInstance.getInstanceId();
 
-        String instanceOrgName = instanceRepository.findById(instanceId).get().getOrgName();
-        boolean sameOrg = instanceOrgName.equals(orgName);
-        if (!sameOrg) {
-            throw new RuntimeException("Requesting to delete serviceInstance for wrong org. Your org is " + orgName + ", but the instance has org " + instanceOrgName + ".");
+        if (serviceInstance.getAzureResourceId() != null) {
+            return Mono.just(new CosmosDBAccountResource(serviceInstance.getAzureResourceId(), instanceId,
+                    serviceInstance.getResourceGroup(), null));
         }
-        String instanceSpaceName = instanceRepository.findById(instanceId).get().getSpaceName();
-        boolean sameSpace = instanceSpaceName.equals(spaceName);
-        if (!sameSpace) {
-            throw new RuntimeException("Requesting to delete serviceInstance for wrong space. Your space is " + spaceName + ", but the instance has space " + instanceSpaceName + ".");
+
+        logger.info("Service Instance [{}] has no stored Azure resource id, looking it up", instanceId);
+        String resourceGroup = serviceInstance.getResourceGroup() != null
+                ? serviceInstance.getResourceGroup()
+                : (String) serviceInstance.getParameters().get(RESOURCE_GROUP);
+        return resourceGroup != null
+                ? cosmosDBAccountClient.getAccount(resourceGroup, instanceId)
+                : cosmosDBAccountClient.listAccounts().filter(candidate -> candidate.getName().equals(instanceId)).next();
+    }
+
+    private Mono<ServiceInstance> findInstance(String instanceId) {
+        return repositoryExecutor.call(() -> instanceRepository.findById(instanceId).orElse(null))
+                .switchIfEmpty(Mono.error(new ServiceInstanceDoesNotExistException(instanceId)));
+    }
+
+    /**
+     * Only requests carrying a Cloud Foundry originating identity with org and space can be verified;
+     * all other requests are let through. An org or space that cannot be resolved fails the request.
+     */
+    private Mono<Void> verifySpaceAndOrg(DeleteServiceInstanceRequest request, ServiceInstance serviceInstance) {
+        if (!(request.getOriginatingIdentity() instanceof CloudFoundryContext)) {
+            return Mono.empty();
         }
+        CloudFoundryContext identity = (CloudFoundryContext) request.getOriginatingIdentity();
+        if (identity.getOrganizationGuid() == null || identity.getSpaceGuid() == null) {
+            return Mono.empty();
+        }
+
+        return resolveOrgName(identity.getOrganizationGuid())
+                .zipWith(resolveSpaceName(identity.getSpaceGuid()))
+                .switchIfEmpty(Mono.error(new ServiceBrokerException("Could not resolve org and space of the request to delete service instance "
+                        + serviceInstance.getInstanceId())))
+                .flatMap(tuple -> {
+                    String orgName = tuple.getT1();
+                    String spaceName = tuple.getT2();
+                    if (!serviceInstance.getOrgName().equals(orgName)) {
+                        return Mono.<Void>error(new ServiceBrokerException("Requesting to delete serviceInstance for wrong org. Your org is " + orgName + ", but the instance has org " + serviceInstance.getOrgName() + "."));
+                    }
+                    if (!serviceInstance.getSpaceName().equals(spaceName)) {
+                        return Mono.<Void>error(new ServiceBrokerException("Requesting to delete serviceInstance for wrong space. Your space is " + spaceName + ", but the instance has space " + serviceInstance.getSpaceName() + "."));
+                    }
+                    return Mono.<Void>empty();
+                });
     }
 
-    private void saveInstance(CreateServiceInstanceRequest request, String instanceId) {
-        Mono<String> orgName = resolveOrgName(((CloudFoundryContext) request.getContext()).getOrganizationGuid());
-        Mono<String> spaceName = resolveSpaceName(((CloudFoundryContext) request.getContext()).getSpaceGuid());
-        Mono<Tuple2<String, String>> orgSpaceTuple = orgName.zipWith(spaceName);
-        orgSpaceTuple.subscribe(tuple -> {
-            logger.info("Saving service with id {} into the Service Broker database", instanceId);
-            ServiceInstance serviceInstance = new ServiceInstance(instanceId, request.getServiceDefinitionId(),
-                    request.getPlanId(), tuple.getT1(), tuple.getT2(), request.getParameters());
-            instanceRepository.save(serviceInstance);
-        });
+    private Mono<ServiceInstance> saveInstance(CreateServiceInstanceRequest request) {
+        String instanceId = request.getServiceInstanceId();
+        if (!(request.getContext() instanceof CloudFoundryContext)) {
+            return Mono.error(new ServiceBrokerInvalidParametersException("Service instances can only be created from Cloud Foundry, with the org and space in the context"));
+        }
+        CloudFoundryContext context = (CloudFoundryContext) request.getContext();
+        if (context.getOrganizationGuid() == null || context.getSpaceGuid() == null) {
+            return Mono.error(new ServiceBrokerInvalidParametersException("The context of the request lacks the org or space"));
+        }
+
+        return resolveOrgName(context.getOrganizationGuid())
+                .zipWith(resolveSpaceName(context.getSpaceGuid()))
+                .switchIfEmpty(Mono.error(new ServiceBrokerException("Could not resolve org and space of service instance " + instanceId)))
+                .flatMap(tuple -> {
+                    logger.info("Saving service with id {} into the Service Broker database", instanceId);
+                    ServiceInstance serviceInstance = new ServiceInstance(instanceId, request.getServiceDefinitionId(),
+                            request.getPlanId(), tuple.getT1(), tuple.getT2(), (String) request.getParameters().get(RESOURCE_GROUP), null,
+                            request.getParameters());
+                    return repositoryExecutor.call(() -> instanceRepository.save(serviceInstance));
+                });
     }
 
     private Mono<String> resolveOrgName(String organizationGuid) {
-        return cloudFoundryOperations.organizations()
-                .list()
-                .filter(os -> os.getId().equals(organizationGuid))
-                .map(OrganizationSummary::getName)
-                .next();
+        return cloudFoundryNameResolver.resolveOrganizationName(organizationGuid);
     }
 
     private Mono<String> resolveSpaceName(String spaceGuid) {
-        return cloudFoundryOperations.spaces()
-                .list()
-                .filter(os -> os.getId().equals(spaceGuid))
-                .map(SpaceSummary::getName)
-                .next();
+        return cloudFoundryNameResolver.resolveSpaceName(spaceGuid);
     }
 
 }
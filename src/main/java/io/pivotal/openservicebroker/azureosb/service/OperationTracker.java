@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.service;
+
+import io.pivotal.openservicebroker.azureosb.data.RepositoryExecutor;
+import io.pivotal.openservicebroker.azureosb.data.repository.ServiceInstanceOperationRepository;
+import io.pivotal.openservicebroker.azureosb.model.OperationType;
+import io.pivotal.openservicebroker.azureosb.model.ServiceInstanceOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Records the state of asynchronous instance operations so {@code last_operation} is served from the database.
+ * <p>
+ * Completions only apply to the operation they were started for; a late callback of a superseded operation
+ * is ignored.
+ */
+@Component
+public class OperationTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationTracker.class);
+
+    private static final String FALLBACK_FAILURE_DESCRIPTION = "Operation failed, see the broker logs for details";
+
+    private final ServiceInstanceOperationRepository operationRepository;
+
+    private final RepositoryExecutor repositoryExecutor;
+
+    public OperationTracker(ServiceInstanceOperationRepository operationRepository, RepositoryExecutor repositoryExecutor) {
+        this.operationRepository = operationRepository;
+        this.repositoryExecutor = repositoryExecutor;
+    }
+
+    public Mono<ServiceInstanceOperation> start(String instanceId, OperationType type, String description, String azureResourceId) {
+        ServiceInstanceOperation operation = new ServiceInstanceOperation(instanceId, UUID.randomUUID().toString(), type,
+                description, azureResourceId);
+        return repositoryExecutor.call(() -> operationRepository.save(operation));
+    }
+
+    public Mono<ServiceInstanceOperation> find(String instanceId) {
+        return repositoryExecutor.call(() -> operationRepository.findById(instanceId).orElse(null));
+    }
+
+    public Mono<Void> remove(String instanceId) {
+        return repositoryExecutor.run(() -> {
+            if (operationRepository.existsById(instanceId)) {
+                operationRepository.deleteById(instanceId);
+            }
+        });
+    }
+
+    public Mono<ServiceInstanceOperation> succeed(String instanceId, String operationId, String description, String azureResourceId) {
+        return complete(instanceId, operationId, operation -> operation.succeed(description, azureResourceId));
+    }
+
+    /**
+     * Marks the operation as failed. Should the description not be storable, the failure is recorded with a fixed
+     * description instead, so the operation never stays in progress.
+     */
+    public Mono<ServiceInstanceOperation> fail(String instanceId, String operationId, String description) {
+        return complete(instanceId, operationId, operation -> operation.fail(description))
+                .onErrorResume(throwable -> {
+                    logger.warn("Could not record failure [{}] of operation [{}] on Service Instance [{}]", description, operationId, instanceId, throwable);
+                    return complete(instanceId, operationId, operation -> operation.fail(FALLBACK_FAILURE_DESCRIPTION));
+                });
+    }
+
+    private Mono<ServiceInstanceOperation> complete(String instanceId, String operationId, Consumer<ServiceInstanceOperation> transition) {
+        return repositoryExecutor.call(() -> operationRepository.findById(instanceId)
+                .filter(operation -> operation.getOperationId().equals(operationId))
+                .map(operation -> {
+                    transition.accept(operation);
+                    return operationRepository.save(operation);
+                })
+                .orElse(null));
+    }
+}
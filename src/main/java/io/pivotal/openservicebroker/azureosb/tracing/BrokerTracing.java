@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.tracing;
+
+import brave.Span;
+import brave.Tracer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Opens child spans around the broker's outbound calls: ARM requests, Cloud Controller lookups and JPA round-trips.
+ * <p>
+ * The reactive variants subscribe to the call with the new span in scope, so work the call schedules on the Azure
+ * or persistence scheduler is attributed to it, and finish the span when the call terminates. Signals coming back on
+ * SDK callback threads continue the caller's chain, where Sleuth's Reactor instrumentation restores the request's span.
+ */
+public class BrokerTracing {
+
+    private final Tracer tracer;
+
+    public BrokerTracing(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    public <T> Mono<T> span(String name, Mono<T> call) {
+        return Mono.create(sink -> {
+            Span span = tracer.nextSpan().name(name).start();
+            try (Tracer.SpanInScope ignored = tracer.withSpanInScope(span)) {
+                Disposable subscription = traced(span, call).subscribe(sink::success, sink::error, sink::success);
+                sink.onDispose(subscription);
+            }
+        });
+    }
+
+    /**
+     * Like {@link #span(String, Mono)}, but only when there is a span to attach to, so that background polling does not
+     * start traces of its own.
+     */
+    public <T> Mono<T> childSpan(String name, Mono<T> call) {
+        return Mono.defer(() -> tracer.currentSpan() == null ? call : span(name, call));
+    }
+
+    public <T> Flux<T> span(String name, Flux<T> call) {
+        return Flux.create(sink -> {
+            Span span = tracer.nextSpan().name(name).start();
+            try (Tracer.SpanInScope ignored = tracer.withSpanInScope(span)) {
+                Disposable subscription = traced(span, call).subscribe(sink::next, sink::error, sink::complete);
+                sink.onDispose(subscription);
+            }
+        });
+    }
+
+    public <T> T inSpan(String name, Supplier<T> action) {
+        Span span = tracer.nextSpan().name(name).start();
+        try (Tracer.SpanInScope ignored = tracer.withSpanInScope(span)) {
+            return action.get();
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
+
+    public void runInSpan(String name, Runnable action) {
+        inSpan(name, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private static <T> Mono<T> traced(Span span, Mono<T> call) {
+        return call.doOnError(span::error).doFinally(signal -> span.finish());
+    }
+
+    private static <T> Flux<T> traced(Span span, Flux<T> call) {
+        return call.doOnError(span::error).doFinally(signal -> span.finish());
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.tracing;
+
+import brave.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+
+@Configuration
+public class TracingConfiguration {
+
+    private static final Logger spanLogger = LoggerFactory.getLogger("io.pivotal.openservicebroker.azureosb.tracing.spans");
+
+    @Bean
+    public BrokerTracing brokerTracing(Tracer tracer) {
+        return new BrokerTracing(tracer);
+    }
+
+    /**
+     * Without a Zipkin collector, finished spans go to the log as Zipkin JSON when the span logger is at DEBUG.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.zipkin.enabled", havingValue = "false")
+    public Reporter<Span> loggingSpanReporter() {
+        return span -> {
+            if (spanLogger.isDebugEnabled()) {
+                spanLogger.debug("{}", span);
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+-- The schema Hibernate generated before the broker managed it with Flyway. Databases created back then are
+-- baselined at this version and upgraded from V2 on.
+CREATE TABLE service_instances (
+    instance_id VARCHAR(255) NOT NULL,
+    org_name VARCHAR(255),
+    plan_id VARCHAR(255),
+    service_definition_id VARCHAR(255),
+    space_name VARCHAR(255),
+    PRIMARY KEY (instance_id)
+);
+
+CREATE TABLE service_instance_parameters (
+    instance_id VARCHAR(255) NOT NULL,
+    parameter_value VARCHAR(255),
+    parameter_name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (instance_id, parameter_name),
+    CONSTRAINT service_instance_parameters_instance FOREIGN KEY (instance_id) REFERENCES service_instances (instance_id)
+);
+
+CREATE TABLE service_bindings (
+    binding_id VARCHAR(255) NOT NULL,
+    PRIMARY KEY (binding_id)
+);
+
+CREATE TABLE service_binding_parameters (
+    binding_id VARCHAR(255) NOT NULL,
+    parameter_value VARCHAR(255),
+    parameter_name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (binding_id, parameter_name),
+    CONSTRAINT service_binding_parameters_binding FOREIGN KEY (binding_id) REFERENCES service_bindings (binding_id)
+);
+
+CREATE TABLE service_binding_credentials (
+    binding_id VARCHAR(255) NOT NULL,
+    credential_value VARCHAR(255),
+    credential_name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (binding_id, credential_name),
+    CONSTRAINT service_binding_credentials_binding FOREIGN KEY (binding_id) REFERENCES service_bindings (binding_id)
+);
@@ -0,0 +1,75 @@
+ALTER TABLE service_instances ADD COLUMN resource_group VARCHAR(255);
+
+ALTER TABLE service_instances ADD COLUMN azure_resource_id VARCHAR(255);
+
+ALTER TABLE service_instances ADD COLUMN parameters CLOB;
+
+ALTER TABLE service_instances ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+
+ALTER TABLE service_bindings ADD COLUMN parameters CLOB;
+
+ALTER TABLE service_bindings ADD COLUMN credentials CLOB;
+
+ALTER TABLE service_bindings ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+
+CREATE TABLE service_instance_operations (
+    instance_id VARCHAR(255) NOT NULL,
+    operation_id VARCHAR(255),
+    type VARCHAR(255),
+    state VARCHAR(255),
+    description VARCHAR(255),
+    azure_resource_id VARCHAR(255),
+    started_at TIMESTAMP,
+    updated_at TIMESTAMP,
+    PRIMARY KEY (instance_id)
+);
+
+CREATE TABLE provisioning_tasks (
+    sequence BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    instance_id VARCHAR(255),
+    operation_id VARCHAR(255),
+    type VARCHAR(255),
+    resource_group VARCHAR(255),
+    azure_resource_id VARCHAR(255),
+    plan_id VARCHAR(255),
+    enqueued_at TIMESTAMP,
+    started_at TIMESTAMP,
+    claimed_by VARCHAR(255),
+    PRIMARY KEY (sequence)
+);
+
+CREATE INDEX provisioning_tasks_instance_id ON provisioning_tasks (instance_id);
+
+CREATE TABLE instance_locks (
+    lock_key VARCHAR(255) NOT NULL,
+    locked_by VARCHAR(255),
+    locked_until TIMESTAMP,
+    PRIMARY KEY (lock_key)
+);
+
+-- The parameters were stored one row per entry, as strings
+UPDATE service_instances SET parameters = (
+    SELECT '{' || GROUP_CONCAT('"' || REPLACE(REPLACE(p.parameter_name, '\', '\\'), '"', '\"') || '":'
+            || CASE WHEN p.parameter_value IS NULL THEN 'null' ELSE '"' || REPLACE(REPLACE(p.parameter_value, '\', '\\'), '"', '\"') || '"' END
+            SEPARATOR ',') || '}'
+    FROM service_instance_parameters p WHERE p.instance_id = service_instances.instance_id
+);
+
+UPDATE service_bindings SET parameters = (
+    SELECT '{' || GROUP_CONCAT('"' || REPLACE(REPLACE(p.parameter_name, '\', '\\'), '"', '\"') || '":'
+            || CASE WHEN p.parameter_value IS NULL THEN 'null' ELSE '"' || REPLACE(REPLACE(p.parameter_value, '\', '\\'), '"', '\"') || '"' END
+            SEPARATOR ',') || '}'
+    FROM service_binding_parameters p WHERE p.binding_id = service_bindings.binding_id
+);
+
+UPDATE service_instances SET resource_group = (
+    SELECT p.parameter_value FROM service_instance_parameters p
+    WHERE p.instance_id = service_instances.instance_id AND p.parameter_name = 'resourceGroupName'
+);
+
+-- The binding credentials table was never written to
+DROP TABLE service_binding_credentials;
+
+DROP TABLE service_binding_parameters;
+
+DROP TABLE service_instance_parameters;
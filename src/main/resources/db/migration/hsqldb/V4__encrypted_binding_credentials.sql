@@ -0,0 +1,9 @@
+ALTER TABLE service_bindings DROP COLUMN credentials;
+
+ALTER TABLE service_bindings ADD COLUMN instance_id VARCHAR(255);
+
+ALTER TABLE service_bindings ADD COLUMN encrypted_credentials CLOB;
+
+ALTER TABLE service_bindings ADD COLUMN credentials_version INTEGER;
+
+CREATE INDEX service_bindings_instance_id ON service_bindings (instance_id);
@@ -0,0 +1,7 @@
+CREATE TABLE idempotency_keys (
+    request_key VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    operation_id VARCHAR(255),
+    created_at DATETIME(6),
+    PRIMARY KEY (request_key)
+);
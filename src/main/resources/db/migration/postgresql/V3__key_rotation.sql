@@ -0,0 +1,3 @@
+ALTER TABLE service_instances ADD COLUMN credentials_version INTEGER DEFAULT 0 NOT NULL;
+
+ALTER TABLE service_instances ADD COLUMN active_key VARCHAR(255);
@@ -0,0 +1,3 @@
+ALTER TABLE provisioning_tasks ADD COLUMN heartbeat_at TIMESTAMP;
+
+UPDATE provisioning_tasks SET heartbeat_at = started_at;
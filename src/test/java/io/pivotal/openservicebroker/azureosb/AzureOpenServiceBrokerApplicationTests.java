@@ -7,9 +7,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
-import org.springframework.cloud.servicebroker.model.CloudFoundryContext;
 import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -32,7 +32,6 @@ public class AzureOpenServiceBrokerApplicationTests {
 	final static String INSTANCE_ID = "andreas-test-db2";
 	final static String BINDING_ID = "my-binding-id";
 	final static String RESOURCE_GROUP = "test-resource-group";
-	final static String RESOURCE_GROUP_KEY = "resourceGroupName";
 	final static String ORG_GUID = "ba950d69-cbbc-4ede-9341-0965aed49db8";
 	final static String SPACE_GUID = "74036a83-f676-4e8b-b0ec-dfb812fff551";
 
@@ -42,7 +41,19 @@ public class AzureOpenServiceBrokerApplicationTests {
 
 	@Test
 	public void catalog() {
-		webTestClient.get().uri("/v2/catalog").exchange().expectStatus().isOk();
+		webTestClient.get().uri(OsbRequests.CATALOG).exchange().expectStatus().isOk();
+	}
+
+	@Test
+	public void catalogNotModified() {
+		String etag = webTestClient.get().uri(OsbRequests.CATALOG).exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueMatches(HttpHeaders.ETAG, "\".+\"")
+				.returnResult(String.class).getResponseHeaders().getETag();
+
+		webTestClient.get().uri(OsbRequests.CATALOG).header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+				.expectStatus().isNotModified()
+				.expectBody().isEmpty();
 	}
 
 	@Test
@@ -51,33 +62,27 @@ public class AzureOpenServiceBrokerApplicationTests {
 
 		// Create Instance
 
-		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
-				.serviceDefinitionId("cosmosdb")
-				.parameters(RESOURCE_GROUP_KEY, RESOURCE_GROUP)
-				.planId("db-small")
-				.context(CloudFoundryContext.builder()
-						.organizationGuid(ORG_GUID)
-						.spaceGuid(SPACE_GUID)
-						.build())
-				.build();
-		webTestClient.put().uri("/v2/service_instances/{instanceId}", INSTANCE_ID)
-				.body(BodyInserters.fromObject(request)).exchange().expectStatus().isEqualTo(HttpStatus.OK);
+		CreateServiceInstanceRequest request = OsbRequests.createInstance(RESOURCE_GROUP, ORG_GUID, SPACE_GUID);
+		webTestClient.put().uri(OsbRequests.PROVISION, INSTANCE_ID)
+				.body(BodyInserters.fromObject(request)).exchange().expectStatus().isEqualTo(HttpStatus.ACCEPTED);
 
-		// Get Instance
+		// Poll Last Operation
 
 		with().pollDelay(5, SECONDS).and().pollInterval(5, SECONDS).await().atMost(15, MINUTES).untilAsserted(() ->
-				webTestClient.get().uri("/v2/service_instances/{instanceId}", INSTANCE_ID)
-				.exchange().expectStatus().isEqualTo(HttpStatus.OK));
+				webTestClient.get().uri(OsbRequests.LAST_OPERATION, INSTANCE_ID)
+				.exchange().expectStatus().isEqualTo(HttpStatus.OK)
+				.expectBody().jsonPath("$.state").isEqualTo("succeeded"));
+
+		// Get Instance
+
+		webTestClient.get().uri(OsbRequests.INSTANCE, INSTANCE_ID)
+				.exchange().expectStatus().isEqualTo(HttpStatus.OK);
 
 		// Create Service Binding
 
-		CreateServiceInstanceBindingRequest createServiceInstanceBindingRequest = CreateServiceInstanceBindingRequest.builder()
-				.serviceDefinitionId("cosmosdb")
-				.parameters(RESOURCE_GROUP_KEY, RESOURCE_GROUP)
-				.planId("db-small")
-				.serviceInstanceId(INSTANCE_ID).build();
+		CreateServiceInstanceBindingRequest createServiceInstanceBindingRequest = OsbRequests.createBinding(INSTANCE_ID, RESOURCE_GROUP);
 
-		webTestClient.put().uri("/v2/service_instances/{instanceId}/service_bindings/{bindingId}", INSTANCE_ID, BINDING_ID)
+		webTestClient.put().uri(OsbRequests.BINDING, INSTANCE_ID, BINDING_ID)
 				.body(BodyInserters.fromObject(createServiceInstanceBindingRequest)).exchange().expectStatus().isEqualTo(HttpStatus.CREATED);
 
 		// Delete Service Binding
@@ -85,13 +90,13 @@ public class AzureOpenServiceBrokerApplicationTests {
 		Thread.sleep(15_000);
 
 		// TODO: set header X-Broker-API-Originating-Identity to set the org and space
-		webTestClient.delete().uri("/v2/service_instances/{instanceId}/service_bindings/{bindingId}?service_id={serviceId}&plan_id={planId}", INSTANCE_ID, BINDING_ID, "cosmosdb", "db-small")
+		webTestClient.delete().uri(OsbRequests.UNBIND, INSTANCE_ID, BINDING_ID)
 				.exchange().expectStatus().isEqualTo(HttpStatus.OK);
 
 		// Delete Instance
 
 		// TODO: set header X-Broker-API-Originating-Identity to set the org and space
-		webTestClient.delete().uri("/v2/service_instances/{instanceId}?service_id={serviceId}&plan_id={planId}", INSTANCE_ID, "cosmosdb", "db-small")
-				.exchange().expectStatus().isEqualTo(HttpStatus.OK);
+		webTestClient.delete().uri(OsbRequests.DEPROVISION, INSTANCE_ID)
+				.exchange().expectStatus().isEqualTo(HttpStatus.ACCEPTED);
 	}
 }
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.pivotal.openservicebroker.azureosb.fake.FakeCloudFoundryNameLookup;
+import io.pivotal.openservicebroker.azureosb.fake.FakeCosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.resilience.DependencyGuards;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.with;
+
+/**
+ * Runs the Open Service Broker lifecycle against the simulated Azure and Cloud Controller of the {@code fake} profile,
+ * without credentials or network, in seconds.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"spring.main.web-application-type=reactive",
+		"broker.resilience.azure.ring-buffer-size-in-closed-state=4"}, webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("fake")
+@AutoConfigureWebClient
+public class BrokerLifecycleTests {
+
+	final static String RESOURCE_GROUP = "test-resource-group";
+	final static String ORG_GUID = "ba950d69-cbbc-4ede-9341-0965aed49db8";
+	final static String SPACE_GUID = "74036a83-f676-4e8b-b0ec-dfb812fff551";
+
+	@Autowired
+	private WebTestClient webTestClient;
+
+	@Autowired
+	private FakeCosmosDBAccountClient azure;
+
+	@Autowired
+	private DependencyGuards dependencyGuards;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private ConfigurableEnvironment environment;
+
+	@After
+	public void resetFaults() {
+		azure.getFaults().reset();
+		dependencyGuards.azure().getCircuitBreaker().reset();
+	}
+
+	@Test
+	public void lifecycle() {
+		azure.getFaults().setLatency(Duration.ofMillis(100));
+		azure.getFaults().setLatencyJitter(Duration.ofMillis(100));
+
+		provision("lifecycle-instance");
+
+		webTestClient.get().uri(OsbRequests.INSTANCE, "lifecycle-instance")
+				.exchange().expectStatus().isOk();
+
+		webTestClient.put().uri(OsbRequests.BINDING, "lifecycle-instance", "lifecycle-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("lifecycle-instance", RESOURCE_GROUP)))
+				.exchange().expectStatus().isCreated()
+				.expectBody().jsonPath("$.credentials.cosmosdb_master_key").isNotEmpty();
+
+		webTestClient.delete().uri(OsbRequests.UNBIND, "lifecycle-instance", "lifecycle-binding")
+				.exchange().expectStatus().isOk();
+
+		webTestClient.delete().uri(OsbRequests.DEPROVISION, "lifecycle-instance")
+				.exchange().expectStatus().isAccepted();
+
+		with().pollInterval(100, MILLISECONDS).await().atMost(30, SECONDS).until(() -> !azure.hasAccount("lifecycle-instance"));
+	}
+
+	@Test
+	public void bindingRetriedAfterThrottling() {
+		provision("throttled-instance");
+
+		azure.getFaults().throttleNext(1);
+		webTestClient.put().uri(OsbRequests.BINDING, "throttled-instance", "throttled-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("throttled-instance", RESOURCE_GROUP)))
+				.exchange().expectStatus().is5xxServerError();
+
+		webTestClient.put().uri(OsbRequests.BINDING, "throttled-instance", "throttled-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("throttled-instance", RESOURCE_GROUP)))
+				.exchange().expectStatus().isCreated();
+	}
+
+	@Test
+	public void failingAzureFailsFast() {
+		provision("failing-instance");
+
+		azure.getFaults().setFailureRate(1);
+		HttpStatus status = null;
+		for (int attempt = 0; attempt < 10 && status != HttpStatus.SERVICE_UNAVAILABLE; attempt++) {
+			status = webTestClient.put().uri(OsbRequests.BINDING, "failing-instance", "failing-binding-" + attempt)
+					.body(BodyInserters.fromObject(OsbRequests.createBinding("failing-instance", RESOURCE_GROUP)))
+					.exchange().returnResult(String.class).getStatus();
+		}
+		assertThat(status).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+		webTestClient.put().uri(OsbRequests.BINDING, "failing-instance", "failing-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("failing-instance", RESOURCE_GROUP)))
+				.exchange().expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+				.expectHeader().valueMatches(HttpHeaders.RETRY_AFTER, "\\d+");
+
+		webTestClient.get().uri(OsbRequests.CATALOG).exchange().expectStatus().isOk();
+	}
+
+	@Test
+	public void provisionWithoutCloudFoundryContextIsRejected() {
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId(OsbRequests.SERVICE_ID)
+				.planId(OsbRequests.PLAN_ID)
+				.parameters(OsbRequests.RESOURCE_GROUP_KEY, RESOURCE_GROUP)
+				.build();
+
+		webTestClient.put().uri(OsbRequests.PROVISION, "context-less-instance")
+				.body(BodyInserters.fromObject(request))
+				.exchange().expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
+	@Test
+	public void deprovisionFromUnknownOrgIsRefused() {
+		provision("unknown-org-instance");
+
+		String identity = "{\"organizationGuid\":\"" + FakeCloudFoundryNameLookup.UNKNOWN_GUID
+				+ "\",\"spaceGuid\":\"" + SPACE_GUID + "\"}";
+		webTestClient.delete().uri(OsbRequests.DEPROVISION, "unknown-org-instance")
+				.header("X-Broker-API-Originating-Identity",
+						"cloudfoundry " + Base64.getEncoder().encodeToString(identity.getBytes(StandardCharsets.UTF_8)))
+				.exchange().expectStatus().is5xxServerError();
+
+		assertThat(azure.hasAccount("unknown-org-instance")).isTrue();
+		webTestClient.get().uri(OsbRequests.INSTANCE, "unknown-org-instance")
+				.exchange().expectStatus().isOk();
+	}
+
+	@Test
+	public void keyRotationRequiresAdmin() {
+		provision("rotated-instance");
+
+		webTestClient.post().uri("/actuator/keyrotation")
+				.body(BodyInserters.fromObject(Collections.singletonMap("instanceId", "rotated-instance")))
+				.exchange().expectStatus().isUnauthorized();
+
+		webTestClient.post().uri("/actuator/keyrotation")
+				.headers(headers -> headers.setBasicAuth("admin", "fake-admin-password"))
+				.body(BodyInserters.fromObject(Collections.singletonMap("instanceId", "rotated-instance")))
+				.exchange().expectStatus().isOk()
+				.expectBody().jsonPath("$.status").isEqualTo("ROTATED")
+				.jsonPath("$.activeKey").isEqualTo("SECONDARY");
+
+		webTestClient.get().uri("/actuator/health").exchange().expectStatus().isOk();
+	}
+
+	@Test
+	public void bindingsCarryOnlyActiveKeys() {
+		provision("active-keys-instance");
+
+		webTestClient.post().uri("/actuator/keyrotation")
+				.headers(headers -> headers.setBasicAuth("admin", "fake-admin-password"))
+				.body(BodyInserters.fromObject(Collections.singletonMap("instanceId", "active-keys-instance")))
+				.exchange().expectStatus().isOk();
+
+		webTestClient.put().uri(OsbRequests.BINDING, "active-keys-instance", "active-keys-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("active-keys-instance", RESOURCE_GROUP)))
+				.exchange().expectStatus().isCreated()
+				.expectBody()
+				.jsonPath("$.credentials.cosmosdb_master_key").isEqualTo("active-keys-instance-secondary-1")
+				.jsonPath("$.credentials.cosmosdb_keys.secondaryMasterKey").isEqualTo("active-keys-instance-secondary-1")
+				.jsonPath("$.credentials.cosmosdb_keys.primaryMasterKey").doesNotExist()
+				.jsonPath("$.credentials.cosmosdb_keys.primaryReadonlyMasterKey").doesNotExist()
+				.jsonPath("$.credentials.cosmosdb_connection_strings.length()").isEqualTo(2)
+				.jsonPath("$.credentials.cosmosdb_connection_strings[?(@.connectionString =~ /.*primary.*/)]").doesNotExist();
+	}
+
+	@Test
+	public void repeatedProvisionMustMatch() {
+		provision("repeated-instance");
+
+		webTestClient.put().uri(OsbRequests.PROVISION, "repeated-instance")
+				.body(BodyInserters.fromObject(OsbRequests.createInstance(RESOURCE_GROUP, ORG_GUID, SPACE_GUID)))
+				.exchange().expectStatus().isOk();
+
+		webTestClient.put().uri(OsbRequests.PROVISION, "repeated-instance")
+				.body(BodyInserters.fromObject(OsbRequests.createInstance("other-resource-group", ORG_GUID, SPACE_GUID)))
+				.exchange().expectStatus().isEqualTo(HttpStatus.CONFLICT);
+	}
+
+	@Test
+	public void repeatedBindingMustMatch() {
+		provision("repeated-binding-instance");
+
+		webTestClient.put().uri(OsbRequests.BINDING, "repeated-binding-instance", "repeated-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("repeated-binding-instance", RESOURCE_GROUP)))
+				.exchange().expectStatus().isCreated();
+
+		webTestClient.put().uri(OsbRequests.BINDING, "repeated-binding-instance", "repeated-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("repeated-binding-instance", RESOURCE_GROUP)))
+				.exchange().expectStatus().isOk();
+
+		webTestClient.put().uri(OsbRequests.BINDING, "repeated-binding-instance", "repeated-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("repeated-binding-instance", "other-resource-group")))
+				.exchange().expectStatus().isEqualTo(HttpStatus.CONFLICT);
+	}
+
+	@Test
+	public void identicalRequestsInFlightAreShared() throws Exception {
+		provision("shared-instance");
+		double deduplicated = meterRegistry.counter("broker.requests.deduplicated", "type", "binding").count();
+
+		azure.getFaults().setLatency(Duration.ofMillis(500));
+		Callable<HttpStatus> bind = () -> webTestClient.put().uri(OsbRequests.BINDING, "shared-instance", "shared-binding")
+				.body(BodyInserters.fromObject(OsbRequests.createBinding("shared-instance", RESOURCE_GROUP)))
+				.exchange().returnResult(String.class).getStatus();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<HttpStatus> first = executor.submit(bind);
+			Future<HttpStatus> second = executor.submit(bind);
+
+			assertThat(first.get(30, SECONDS)).isEqualTo(HttpStatus.CREATED);
+			assertThat(second.get(30, SECONDS)).isEqualTo(HttpStatus.CREATED);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(meterRegistry.counter("broker.requests.deduplicated", "type", "binding").count()).isEqualTo(deduplicated + 1);
+	}
+
+	@Test
+	public void catalogIsAnsweredWithETag() {
+		String etag = webTestClient.get().uri(OsbRequests.CATALOG)
+				.exchange().expectStatus().isOk()
+				.expectHeader().valueMatches(HttpHeaders.ETAG, "\".+\"")
+				.returnResult(String.class).getResponseHeaders().getETag();
+
+		webTestClient.get().uri(OsbRequests.CATALOG)
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.exchange().expectStatus().isNotModified()
+				.expectBody().isEmpty();
+	}
+
+	@Test
+	public void invalidCatalogRefreshKeepsPreviousCatalog() {
+		String etag = webTestClient.get().uri(OsbRequests.CATALOG)
+				.exchange().expectStatus().isOk()
+				.returnResult(String.class).getResponseHeaders().getETag();
+
+		MutablePropertySources propertySources = environment.getPropertySources();
+		propertySources.addFirst(new MapPropertySource("invalid-catalog",
+				Collections.singletonMap("broker.catalog.plans[0].profile", "no-such-profile")));
+		try {
+			refresh();
+
+			webTestClient.get().uri(OsbRequests.CATALOG)
+					.exchange().expectStatus().isOk()
+					.expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+					.expectBody().jsonPath("$.services[0].plans[0].id").isEqualTo(OsbRequests.PLAN_ID);
+		} finally {
+			propertySources.remove("invalid-catalog");
+			refresh();
+		}
+	}
+
+	private void refresh() {
+		webTestClient.post().uri("/actuator/refresh")
+				.headers(headers -> headers.setBasicAuth("admin", "fake-admin-password"))
+				.exchange().expectStatus().isOk();
+	}
+
+	@Test
+	public void adminApiRequiresAdmin() {
+		webTestClient.get().uri("/admin/inventory/instances")
+				.exchange().expectStatus().isUnauthorized();
+
+		webTestClient.get().uri("/admin/inventory/instances")
+				.headers(headers -> headers.setBasicAuth("admin", "wrong-password"))
+				.exchange().expectStatus().isUnauthorized();
+
+		webTestClient.get().uri("/admin/inventory/instances")
+				.headers(headers -> headers.setBasicAuth("admin", "fake-admin-password"))
+				.exchange().expectStatus().isOk();
+	}
+
+	private void provision(String instanceId) {
+		webTestClient.put().uri(OsbRequests.PROVISION, instanceId)
+				.body(BodyInserters.fromObject(OsbRequests.createInstance(RESOURCE_GROUP, ORG_GUID, SPACE_GUID)))
+				.exchange().expectStatus().isAccepted();
+
+		with().pollInterval(100, MILLISECONDS).await().atMost(30, SECONDS).untilAsserted(() ->
+				webTestClient.get().uri(OsbRequests.LAST_OPERATION, instanceId)
+						.exchange().expectStatus().isOk()
+						.expectBody().jsonPath("$.state").isEqualTo("succeeded"));
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb;
+
+import org.springframework.cloud.servicebroker.model.CloudFoundryContext;
+import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+
+/**
+ * The Open Service Broker requests the Cloud Controller sends for a CosmosDB instance, shared by the
+ * application test, the benchmarks and the load test.
+ */
+public final class OsbRequests {
+
+	public static final String SERVICE_ID = "cosmosdb";
+	public static final String PLAN_ID = "db-small";
+	public static final String RESOURCE_GROUP_KEY = "resourceGroupName";
+
+	public static final String CATALOG = "/v2/catalog";
+	public static final String INSTANCE = "/v2/service_instances/{instanceId}";
+	public static final String PROVISION = INSTANCE + "?accepts_incomplete=true";
+	public static final String DEPROVISION = INSTANCE + "?service_id=" + SERVICE_ID + "&plan_id=" + PLAN_ID + "&accepts_incomplete=true";
+	public static final String LAST_OPERATION = INSTANCE + "/last_operation";
+	public static final String BINDING = INSTANCE + "/service_bindings/{bindingId}";
+	public static final String UNBIND = BINDING + "?service_id=" + SERVICE_ID + "&plan_id=" + PLAN_ID;
+
+	private OsbRequests() {
+	}
+
+	public static CreateServiceInstanceRequest createInstance(String resourceGroup, String organizationGuid, String spaceGuid) {
+		return CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId(SERVICE_ID)
+				.parameters(RESOURCE_GROUP_KEY, resourceGroup)
+				.planId(PLAN_ID)
+				.context(CloudFoundryContext.builder()
+						.organizationGuid(organizationGuid)
+						.spaceGuid(spaceGuid)
+						.build())
+				.build();
+	}
+
+	public static CreateServiceInstanceBindingRequest createBinding(String instanceId, String resourceGroup) {
+		return CreateServiceInstanceBindingRequest.builder()
+				.serviceDefinitionId(SERVICE_ID)
+				.parameters(RESOURCE_GROUP_KEY, resourceGroup)
+				.planId(PLAN_ID)
+				.serviceInstanceId(instanceId)
+				.build();
+	}
+}
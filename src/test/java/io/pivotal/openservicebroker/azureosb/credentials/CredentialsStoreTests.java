@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.credentials;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CredentialsStoreTests {
+
+	private static final String KEY_1 = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+
+	private static final String KEY_2 = "Hx4dHBsaGRgXFhUUExIREA8ODQwLCgkIBwYFBAMCAQA=";
+
+	private static final Map<String, Object> CREDENTIALS = Collections.singletonMap("cosmosdb_master_key", "secret");
+
+	@Test
+	public void decryptsWhatItEncrypted() {
+		CredentialsStore store = store("1", KEY_1);
+
+		String record = store.encrypt("instance", CREDENTIALS);
+
+		assertThat(record).startsWith("v1:1:").doesNotContain("secret");
+		assertThat(store.decrypt("instance", record)).isEqualTo(CREDENTIALS);
+	}
+
+	@Test
+	public void rejectsRecordsOfAnotherInstance() {
+		CredentialsStore store = store("1", KEY_1);
+
+		String record = store.encrypt("instance", CREDENTIALS);
+
+		assertThatThrownBy(() -> store.decrypt("other-instance", record)).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void readsRecordsOfRetiredKeys() {
+		String record = store("1", KEY_1).encrypt("instance", CREDENTIALS);
+
+		CredentialsStoreProperties properties = properties("2", KEY_2);
+		properties.getRetiredKeys().put("1", KEY_1);
+
+		assertThat(new CredentialsStore(properties).decrypt("instance", record)).isEqualTo(CREDENTIALS);
+	}
+
+	@Test
+	public void isDisabledWithoutMasterKey() {
+		assertThat(new CredentialsStore(new CredentialsStoreProperties()).isEnabled()).isFalse();
+	}
+
+	private static CredentialsStore store(String keyId, String masterKey) {
+		return new CredentialsStore(properties(keyId, masterKey));
+	}
+
+	private static CredentialsStoreProperties properties(String keyId, String masterKey) {
+		CredentialsStoreProperties properties = new CredentialsStoreProperties();
+		properties.setKeyId(keyId);
+		properties.setMasterKey(masterKey);
+		return properties;
+	}
+}
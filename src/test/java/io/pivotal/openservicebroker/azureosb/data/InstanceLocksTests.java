@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.data;
+
+import brave.Tracing;
+import io.pivotal.openservicebroker.azureosb.data.repository.InstanceLockRepository;
+import io.pivotal.openservicebroker.azureosb.tracing.BrokerTracing;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.with;
+
+/**
+ * Runs {@link InstanceLocks} against the HSQLDB schema that Flyway migrates, outside of test transactions, so that
+ * every lock operation commits like it does between broker nodes.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class InstanceLocksTests {
+
+	@Autowired
+	private InstanceLockRepository lockRepository;
+
+	private RepositoryExecutor repositoryExecutor;
+
+	private InstanceLocks instanceLocks;
+
+	@Before
+	public void createLocks() {
+		LockProperties properties = new LockProperties();
+		properties.setAcquireTimeout(Duration.ofMillis(500));
+		properties.setRetryInterval(Duration.ofMillis(20));
+		repositoryExecutor = new RepositoryExecutor(Schedulers.newParallel("test-persistence", 4),
+				new BrokerTracing(Tracing.newBuilder().build().tracer()));
+		instanceLocks = new InstanceLocks(lockRepository, repositoryExecutor, properties);
+	}
+
+	@After
+	public void removeLocks() {
+		repositoryExecutor.destroy();
+		lockRepository.deleteAll();
+	}
+
+	@Test
+	public void heldLockIsNotTaken() {
+		lockRepository.insert("held", "other-node", Instant.now().plusSeconds(60));
+
+		assertThat(instanceLocks.tryWithLock("held", Duration.ofMinutes(1), Mono.just("ran")).block()).isNull();
+		assertThatThrownBy(() -> instanceLocks.withLock("held", Mono.just("ran")).block())
+				.isInstanceOf(ServiceBrokerConcurrencyException.class);
+		assertThat(lockRepository.findById("held").get().getLockedBy()).isEqualTo("other-node");
+	}
+
+	@Test
+	public void expiredLeaseIsTakenOver() {
+		lockRepository.insert("expired", "dead-node", Instant.now().minusSeconds(1));
+
+		assertThat(instanceLocks.withLock("expired", Mono.just("ran")).block()).isEqualTo("ran");
+		awaitReleased("expired");
+	}
+
+	@Test
+	public void lockIsReleasedOnlyByItsOwner() {
+		lockRepository.insert("owned", "owner", Instant.now().plusSeconds(60));
+
+		assertThat(lockRepository.release("owned", "someone-else")).isZero();
+		assertThat(lockRepository.release("owned", "owner")).isEqualTo(1);
+	}
+
+	@Test
+	public void holdersDoNotOverlap() {
+		AtomicInteger holders = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		Mono<Void> action = Mono.fromRunnable(() -> {
+			if (holders.incrementAndGet() > 1) {
+				overlaps.incrementAndGet();
+			}
+		}).then(Mono.delay(Duration.ofMillis(50))).then(Mono.fromRunnable(holders::decrementAndGet));
+
+		Mono.when(instanceLocks.withLock("contended", action), instanceLocks.withLock("contended", action),
+				instanceLocks.withLock("contended", action)).block(Duration.ofSeconds(10));
+
+		assertThat(overlaps).hasValue(0);
+		awaitReleased("contended");
+	}
+
+	/**
+	 * Locks are released in the background once the action completes.
+	 */
+	private void awaitReleased(String key) {
+		with().pollInterval(20, MILLISECONDS).await().atMost(5, SECONDS).until(() -> !lockRepository.existsById(key));
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.data.repository;
+
+import io.pivotal.openservicebroker.azureosb.model.ProvisioningTask;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the queries broker nodes share the provisioning queue with against the HSQLDB schema that Flyway migrates,
+ * outside of test transactions, so that every update commits like it does between broker nodes.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProvisioningTaskRepositoryTests {
+
+	private static final Duration STALE_AFTER = Duration.ofMinutes(2);
+
+	@Autowired
+	private ProvisioningTaskRepository taskRepository;
+
+	@After
+	public void removeTasks() {
+		taskRepository.deleteAll();
+	}
+
+	@Test
+	public void exactlyOneNodeClaimsATask() throws Exception {
+		Long sequence = enqueue("claimed-instance").getSequence();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> claims = new ArrayList<>();
+			for (int node = 0; node < 4; node++) {
+				String nodeId = String.valueOf(node);
+				claims.add(executor.submit((Callable<Integer>) () -> taskRepository.claim(sequence, nodeId, Instant.now())));
+			}
+
+			int claimed = 0;
+			for (Future<Integer> claim : claims) {
+				claimed += claim.get(10, SECONDS);
+			}
+			assertThat(claimed).isEqualTo(1);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(taskRepository.findById(sequence).get().getClaimedBy()).isNotNull();
+		assertThat(taskRepository.countByStartedAtIsNotNull()).isEqualTo(1);
+	}
+
+	@Test
+	public void renewedClaimIsNotRequeued() {
+		Instant longAgo = Instant.now().minus(Duration.ofMinutes(10));
+		Long renewed = enqueue("renewed-instance").getSequence();
+		Long lapsed = enqueue("lapsed-instance").getSequence();
+		taskRepository.claim(renewed, "1", longAgo);
+		taskRepository.claim(lapsed, "2", longAgo);
+
+		assertThat(taskRepository.renewClaims("1", Instant.now())).isEqualTo(1);
+		assertThat(taskRepository.requeueTasks("", Instant.now().minus(STALE_AFTER))).isEqualTo(1);
+
+		assertThat(taskRepository.findById(renewed).get().isStarted()).isTrue();
+		assertThat(taskRepository.findById(lapsed).get().isStarted()).isFalse();
+	}
+
+	@Test
+	public void restartedNodeRequeuesItsOwnTasks() {
+		Long own = enqueue("own-instance").getSequence();
+		Long other = enqueue("other-instance").getSequence();
+		taskRepository.claim(own, "1", Instant.now());
+		taskRepository.claim(other, "2", Instant.now());
+
+		assertThat(taskRepository.requeueTasks("1", Instant.now().minus(STALE_AFTER))).isEqualTo(1);
+
+		assertThat(taskRepository.findById(own).get().isStarted()).isFalse();
+		assertThat(taskRepository.findById(other).get().isStarted()).isTrue();
+	}
+
+	@Test
+	public void onlyWaitingTasksAreCancelled() {
+		Long waiting = enqueue("waiting-instance").getSequence();
+		Long running = enqueue("running-instance").getSequence();
+		taskRepository.claim(running, "1", Instant.now());
+
+		assertThat(taskRepository.deleteWaiting(waiting)).isEqualTo(1);
+		assertThat(taskRepository.deleteWaiting(running)).isZero();
+		assertThat(taskRepository.existsById(running)).isTrue();
+	}
+
+	private ProvisioningTask enqueue(String instanceId) {
+		return taskRepository.save(ProvisioningTask.create(instanceId, "operation-" + instanceId, "resource-group", "db-small"));
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.fake;
+
+import io.pivotal.openservicebroker.azureosb.resilience.DependencyGuards;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Replaces Azure and the Cloud Controller with in-memory fakes when the {@code fake} profile is active. Their latency
+ * and faults are set with {@code fake.azure.*} and {@code fake.cloudfoundry.*}, and they are guarded by the same
+ * circuit breakers as the real clients.
+ */
+@Configuration
+@Profile("fake")
+public class FakeBackendConfiguration {
+
+	@Bean
+	@ConfigurationProperties(prefix = "fake.azure")
+	public FaultInjection azureFaults() {
+		return new FaultInjection();
+	}
+
+	@Bean
+	@ConfigurationProperties(prefix = "fake.cloudfoundry")
+	public FaultInjection cloudFoundryFaults() {
+		return new FaultInjection();
+	}
+
+	@Bean
+	@Primary
+	public FakeCosmosDBAccountClient fakeCosmosDBAccountClient(DependencyGuards dependencyGuards) {
+		return new FakeCosmosDBAccountClient(azureFaults(), dependencyGuards.azure());
+	}
+
+	@Bean
+	@Primary
+	public FakeCloudFoundryNameLookup fakeCloudFoundryNameLookup(DependencyGuards dependencyGuards) {
+		return new FakeCloudFoundryNameLookup(cloudFoundryFaults(), dependencyGuards.cloudFoundry());
+	}
+}
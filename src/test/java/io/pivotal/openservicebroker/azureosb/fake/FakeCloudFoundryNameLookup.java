@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.fake;
+
+import io.pivotal.openservicebroker.azureosb.cloudfoundry.CloudFoundryNameLookup;
+import io.pivotal.openservicebroker.azureosb.resilience.DependencyGuard;
+import org.cloudfoundry.client.v2.ClientV2Exception;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Names every organization and space after its GUID, except {@link #UNKNOWN_GUID}, which does not exist. Lookups are subject to {@link FaultInjection}, which answers
+ * throttled and failed lookups like the Cloud Controller, and pass through its {@link DependencyGuard} if given one.
+ */
+public class FakeCloudFoundryNameLookup implements CloudFoundryNameLookup {
+
+	public static final String UNKNOWN_GUID = "00000000-0000-0000-0000-000000000000";
+
+	private final FaultInjection faults;
+
+	private final DependencyGuard guard;
+
+	public FakeCloudFoundryNameLookup() {
+		this(new FaultInjection(), null);
+	}
+
+	public FakeCloudFoundryNameLookup(FaultInjection faults, DependencyGuard guard) {
+		this.faults = faults;
+		this.guard = guard;
+	}
+
+	public FaultInjection getFaults() {
+		return faults;
+	}
+
+	public void setLatency(Duration latency) {
+		faults.setLatency(latency);
+	}
+
+	@Override
+	public Mono<String> getOrganizationName(String organizationGuid) {
+		return simulated(name("org-", organizationGuid));
+	}
+
+	@Override
+	public Mono<String> getSpaceName(String spaceGuid) {
+		return simulated(name("space-", spaceGuid));
+	}
+
+	private static Mono<String> name(String prefix, String guid) {
+		return UNKNOWN_GUID.equals(guid) ? Mono.empty() : Mono.just(prefix + guid);
+	}
+
+	private <T> Mono<T> simulated(Mono<T> call) {
+		Mono<T> faulty = faults.apply(call, () -> new ClientV2Exception(429, 10013, "Rate Limit Exceeded", "CF-RateLimitExceeded"),
+				() -> new ClientV2Exception(500, 10001, "An unknown error occurred.", "UnknownError"));
+		return guard != null ? guard.protect(faulty) : faulty;
+	}
+}
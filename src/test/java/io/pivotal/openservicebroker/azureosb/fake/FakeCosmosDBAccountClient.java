@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.fake;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.CloudException;
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountConnectionString;
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountListConnectionStringsResult;
+import com.microsoft.azure.management.cosmosdb.DatabaseAccountListKeysResult;
+import com.microsoft.azure.management.cosmosdb.KeyKind;
+import com.microsoft.azure.management.cosmosdb.implementation.DatabaseAccountListConnectionStringsResultInner;
+import com.microsoft.azure.management.cosmosdb.implementation.DatabaseAccountListKeysResultInner;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountClient;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountProfile;
+import io.pivotal.openservicebroker.azureosb.azure.CosmosDBAccountResource;
+import io.pivotal.openservicebroker.azureosb.resilience.DependencyGuard;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import retrofit2.Response;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * In-memory stand-in for the CosmosDB accounts of an Azure subscription. Calls are subject to {@link FaultInjection},
+ * which answers throttled and failed calls like ARM, and pass through the Azure {@link DependencyGuard} if given one.
+ */
+public class FakeCosmosDBAccountClient implements CosmosDBAccountClient {
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final Map<String, CosmosDBAccountResource> accounts = new ConcurrentHashMap<>();
+
+	/**
+	 * How often each key of an account has been regenerated, by account name and key kind.
+	 */
+	private final Map<String, Integer> keyGenerations = new ConcurrentHashMap<>();
+
+	private final FaultInjection faults;
+
+	private final DependencyGuard guard;
+
+	public FakeCosmosDBAccountClient() {
+		this(new FaultInjection(), null);
+	}
+
+	public FakeCosmosDBAccountClient(FaultInjection faults, DependencyGuard guard) {
+		this.faults = faults;
+		this.guard = guard;
+	}
+
+	public FaultInjection getFaults() {
+		return faults;
+	}
+
+	public void setLatency(Duration latency) {
+		faults.setLatency(latency);
+	}
+
+	public CosmosDBAccountResource addAccount(String name, String resourceGroup) {
+		Map<String, String> tags = new HashMap<>();
+		tags.put(CosmosDBAccountResource.MANAGED_BY_TAG, CosmosDBAccountResource.MANAGED_BY);
+		tags.put(CosmosDBAccountResource.INSTANCE_ID_TAG, name);
+		CosmosDBAccountResource account = new CosmosDBAccountResource(resourceId(resourceGroup, name), name, resourceGroup, tags);
+		accounts.put(account.getId(), account);
+		return account;
+	}
+
+	public boolean hasAccount(String name) {
+		return accounts.values().stream().anyMatch(account -> account.getName().equals(name));
+	}
+
+	@Override
+	public Mono<CosmosDBAccountResource> createAccount(String name, String resourceGroup, CosmosDBAccountProfile profile) {
+		return simulated(Mono.fromCallable(() -> addAccount(name, resourceGroup)));
+	}
+
+	@Override
+	public Mono<CosmosDBAccountResource> getAccount(String resourceGroup, String name) {
+		return simulated(Mono.fromCallable(() -> accounts.get(resourceId(resourceGroup, name))));
+	}
+
+	@Override
+	public Flux<CosmosDBAccountResource> listAccounts() {
+		return simulated(Mono.just(accounts.values())).flatMapIterable(values -> values);
+	}
+
+	@Override
+	public Mono<Void> deleteAccount(String id) {
+		return simulated(Mono.fromRunnable(() -> accounts.remove(id)));
+	}
+
+	@Override
+	public Mono<DatabaseAccountListConnectionStringsResult> listConnectionStrings(String resourceGroup, String name) {
+		return simulated(Mono.fromCallable(() -> connectionStrings(name, keys(name, kind -> keyGenerations.getOrDefault(name + "/" + kind, 0)))));
+	}
+
+	@Override
+	public Mono<DatabaseAccountListKeysResult> listKeys(String resourceGroup, String name) {
+		return simulated(Mono.fromCallable(() -> keys(name, kind -> keyGenerations.getOrDefault(name + "/" + kind, 0))));
+	}
+
+	@Override
+	public Mono<Void> regenerateKey(String resourceGroup, String name, KeyKind keyKind) {
+		return simulated(Mono.fromRunnable(() -> keyGenerations.merge(name + "/" + keyKind, 1, Integer::sum)));
+	}
+
+	private <T> Mono<T> simulated(Mono<T> call) {
+		Mono<T> faulty = faults.apply(call, () -> cloudException(429, "Too many requests"),
+				() -> cloudException(500, "Internal server error"));
+		return guard != null ? guard.protect(faulty) : faulty;
+	}
+
+	private static CloudException cloudException(int status, String message) {
+		return new CloudException(message, Response.error(status,
+				ResponseBody.create(MediaType.parse("application/json"), "{\"error\":{\"message\":\"" + message + "\"}}")));
+	}
+
+	private static String resourceId(String resourceGroup, String name) {
+		return "/subscriptions/00000000-0000-0000-0000-000000000000/resourceGroups/" + resourceGroup
+				+ "/providers/Microsoft.DocumentDB/databaseAccounts/" + name;
+	}
+
+	public static DatabaseAccountListConnectionStringsResult connectionStrings(String name) {
+		return connectionStrings(name, keys(name));
+	}
+
+	private static DatabaseAccountListConnectionStringsResult connectionStrings(String name, DatabaseAccountListKeysResult keys) {
+		List<DatabaseAccountConnectionString> connectionStrings = Arrays.asList(
+				connectionString(name, keys.primaryMasterKey(), "Primary SQL Connection String"),
+				connectionString(name, keys.secondaryMasterKey(), "Secondary SQL Connection String"),
+				connectionString(name, keys.primaryReadonlyMasterKey(), "Primary Read-Only SQL Connection String"),
+				connectionString(name, keys.secondaryReadonlyMasterKey(), "Secondary Read-Only SQL Connection String"));
+
+		return new DatabaseAccountListConnectionStringsResult() {
+			@Override
+			public List<DatabaseAccountConnectionString> connectionStrings() {
+				return connectionStrings;
+			}
+
+			@Override
+			public DatabaseAccountListConnectionStringsResultInner inner() {
+				return null;
+			}
+		};
+	}
+
+	private static DatabaseAccountConnectionString connectionString(String name, String key, String description) {
+		Map<String, String> connectionString = new HashMap<>();
+		connectionString.put("connectionString", "AccountEndpoint=https://" + name + ".documents.azure.com:443/;AccountKey=" + key + ";");
+		connectionString.put("description", description);
+		return objectMapper.convertValue(connectionString, DatabaseAccountConnectionString.class);
+	}
+
+	public static DatabaseAccountListKeysResult keys(String name) {
+		return keys(name, kind -> 0);
+	}
+
+	private static DatabaseAccountListKeysResult keys(String name, Function<KeyKind, Integer> generations) {
+		return new DatabaseAccountListKeysResult() {
+			@Override
+			public String primaryMasterKey() {
+				return key(name + "-primary", generations.apply(KeyKind.PRIMARY));
+			}
+
+			@Override
+			public String secondaryMasterKey() {
+				return key(name + "-secondary", generations.apply(KeyKind.SECONDARY));
+			}
+
+			@Override
+			public String primaryReadonlyMasterKey() {
+				return key(name + "-primary-readonly", generations.apply(KeyKind.PRIMARY_READONLY));
+			}
+
+			@Override
+			public String secondaryReadonlyMasterKey() {
+				return key(name + "-secondary-readonly", generations.apply(KeyKind.SECONDARY_READONLY));
+			}
+
+			@Override
+			public DatabaseAccountListKeysResultInner inner() {
+				return null;
+			}
+		};
+	}
+
+	private static String key(String key, int generation) {
+		return generation == 0 ? key : key + "-" + generation;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.openservicebroker.azureosb.fake;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Latency, throttling and failures a fake injects into its calls, to simulate a slow or degraded backend.
+ * <p>
+ * Rates draw from a seeded random number generator, so that a run can be repeated exactly; {@link #throttleNext(int)}
+ * and {@link #failNext(int)} inject a fixed number of faults instead. Bound to {@code fake.azure.*} and
+ * {@code fake.cloudfoundry.*} in the {@code fake} profile.
+ */
+public class FaultInjection {
+
+	private volatile Duration latency = Duration.ZERO;
+
+	private volatile Duration latencyJitter = Duration.ZERO;
+
+	private volatile double throttleRate;
+
+	private volatile double failureRate;
+
+	private volatile Random random = new Random(0);
+
+	private final AtomicInteger throttled = new AtomicInteger();
+
+	private final AtomicInteger failing = new AtomicInteger();
+
+	public void setLatency(Duration latency) {
+		this.latency = latency;
+	}
+
+	/**
+	 * Up to this much is added to the latency of each call.
+	 */
+	public void setLatencyJitter(Duration latencyJitter) {
+		this.latencyJitter = latencyJitter;
+	}
+
+	/**
+	 * Share of calls answered with {@code 429 Too Many Requests}, between 0 and 1.
+	 */
+	public void setThrottleRate(double throttleRate) {
+		this.throttleRate = throttleRate;
+	}
+
+	/**
+	 * Share of calls answered with {@code 500 Internal Server Error}, between 0 and 1.
+	 */
+	public void setFailureRate(double failureRate) {
+		this.failureRate = failureRate;
+	}
+
+	public synchronized void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	public void throttleNext(int calls) {
+		throttled.set(calls);
+	}
+
+	public void failNext(int calls) {
+		failing.set(calls);
+	}
+
+	/**
+	 * Turns all faults and latency off.
+	 */
+	public void reset() {
+		latency = Duration.ZERO;
+		latencyJitter = Duration.ZERO;
+		throttleRate = 0;
+		failureRate = 0;
+		throttled.set(0);
+		failing.set(0);
+	}
+
+	/**
+	 * Delays the call, then fails it with {@code throttledError} or {@code failedError} if a fault is due.
+	 * Faults are decided per subscription, so a retried call may succeed.
+	 */
+	<T> Mono<T> apply(Mono<T> call, Supplier<Throwable> throttledError, Supplier<Throwable> failedError) {
+		return Mono.defer(() -> {
+			Mono<T> faulty;
+			if (takeOne(throttled) || draw() < throttleRate) {
+				faulty = Mono.error(throttledError.get());
+			} else if (takeOne(failing) || draw() < failureRate) {
+				faulty = Mono.error(failedError.get());
+			} else {
+				faulty = call;
+			}
+			Duration delay = delay();
+			return delay.isZero() ? faulty : faulty.delaySubscription(delay);
+		});
+	}
+
+	private Duration delay() {
+		Duration jitter = latencyJitter;
+		if (jitter.isZero()) {
+			return latency;
+		}
+		return latency.plusNanos((long) (draw() * jitter.toNanos()));
+	}
+
+	private synchronized double draw() {
+		return random.nextDouble();
+	}
+
+	private static boolean takeOne(AtomicInteger counter) {
+		return counter.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0;
+	}
+}